@@ -1,9 +1,14 @@
 package com.footprint.viewgenerator.Settings;
 
+import com.footprint.viewgenerator.common.FieldNamingStrategies;
 import com.footprint.viewgenerator.common.Utils;
+import com.footprint.viewgenerator.component.ComponentClassifier;
+import com.footprint.viewgenerator.component.ComponentKind;
+import com.footprint.viewgenerator.startup.CachePrewarmer;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.Nullable;
 
@@ -18,15 +23,26 @@ public class Settings implements Configurable {
 
     public static final String PREFIX = "butterknifezelezny_prefix";
     public static final String VIEWHOLDER_CLASS_NAME = "butterknifezelezny_viewholder_class_name";
+    public static final String BASE_CLASSES_PREFIX = "butterknifezelezny_base_classes_";
+    public static final String NAMING_STYLE = "butterknifezelezny_naming_style";
+    public static final String QUALIFY_INCLUDED_IDS = "butterknifezelezny_qualify_included_ids";
+    public static final String PREWARM_LIMIT = "butterknifezelezny_prewarm_limit";
 
     private JPanel mPanel;
     private JTextField mHolderName;
     private JTextField mPrefix;
+    private JComboBox mNamingStyle;
+    private JCheckBox mQualifyIncludedIds;
+    private JTextField mAdapterClasses;
+    private JTextField mViewHolderClasses;
+    private JTextField mViewClasses;
+    private JTextField mDialogClasses;
+    private JTextField mPrewarmLimit;
 
     @Nls
     @Override
     public String getDisplayName() {
-        return "ButterKnifeZelezny";
+        return "Android View Generator";
     }
 
     @Nullable
@@ -44,19 +60,60 @@ public class Settings implements Configurable {
 
     @Override
     public boolean isModified() {
-        return true;
+        PropertiesComponent properties = PropertiesComponent.getInstance();
+        return !mPrefix.getText().equals(Utils.getPrefix())
+                || !mHolderName.getText().equals(Utils.getViewHolderClassName())
+                || mNamingStyle.getSelectedItem() != FieldNamingStrategies.getStyle()
+                || mQualifyIncludedIds.isSelected() != properties.getBoolean(QUALIFY_INCLUDED_IDS, false)
+                || isModified(ComponentKind.ADAPTER, mAdapterClasses)
+                || isModified(ComponentKind.VIEW_HOLDER, mViewHolderClasses)
+                || isModified(ComponentKind.VIEW, mViewClasses)
+                || isModified(ComponentKind.DIALOG, mDialogClasses)
+                || !mPrewarmLimit.getText().trim().equals(String.valueOf(CachePrewarmer.getLimit()));
+    }
+
+    private static boolean isModified(ComponentKind kind, JTextField field) {
+        return !ComponentClassifier.parseBaseClasses(field.getText()).equals(ComponentClassifier.getBaseClasses(kind));
     }
 
     @Override
     public void apply() throws ConfigurationException {
         PropertiesComponent.getInstance().setValue(PREFIX, mPrefix.getText());
         PropertiesComponent.getInstance().setValue(VIEWHOLDER_CLASS_NAME, mHolderName.getText());
+        PropertiesComponent.getInstance().setValue(NAMING_STYLE, ((FieldNamingStrategies.Style) mNamingStyle.getSelectedItem()).name());
+        PropertiesComponent.getInstance().setValue(QUALIFY_INCLUDED_IDS, mQualifyIncludedIds.isSelected());
+        applyBaseClasses(ComponentKind.ADAPTER, mAdapterClasses);
+        applyBaseClasses(ComponentKind.VIEW_HOLDER, mViewHolderClasses);
+        applyBaseClasses(ComponentKind.VIEW, mViewClasses);
+        applyBaseClasses(ComponentKind.DIALOG, mDialogClasses);
+        int prewarmLimit = StringUtil.parseInt(mPrewarmLimit.getText().trim(), -1);
+        if (prewarmLimit < 0) {
+            throw new ConfigurationException("The number of files to prewarm must be 0 or more");
+        }
+        PropertiesComponent.getInstance().setValue(PREWARM_LIMIT, String.valueOf(prewarmLimit));
+    }
+
+    /**
+     * Only changed base classes are stored, storing them reclassifies every class
+     */
+    private static void applyBaseClasses(ComponentKind kind, JTextField field) {
+        if (isModified(kind, field)) {
+            ComponentClassifier.setBaseClasses(kind, field.getText());
+        }
     }
 
     @Override
     public void reset() {
         mPrefix.setText(Utils.getPrefix());
         mHolderName.setText(Utils.getViewHolderClassName());
+        mNamingStyle.setModel(new DefaultComboBoxModel(FieldNamingStrategies.Style.values()));
+        mNamingStyle.setSelectedItem(FieldNamingStrategies.getStyle());
+        mQualifyIncludedIds.setSelected(PropertiesComponent.getInstance().getBoolean(QUALIFY_INCLUDED_IDS, false));
+        mAdapterClasses.setText(StringUtil.join(ComponentClassifier.getBaseClasses(ComponentKind.ADAPTER), ", "));
+        mViewHolderClasses.setText(StringUtil.join(ComponentClassifier.getBaseClasses(ComponentKind.VIEW_HOLDER), ", "));
+        mViewClasses.setText(StringUtil.join(ComponentClassifier.getBaseClasses(ComponentKind.VIEW), ", "));
+        mDialogClasses.setText(StringUtil.join(ComponentClassifier.getBaseClasses(ComponentKind.DIALOG), ", "));
+        mPrewarmLimit.setText(String.valueOf(CachePrewarmer.getLimit()));
     }
 
     @Override
@@ -0,0 +1,110 @@
+package com.footprint.viewgenerator.action;
+
+import com.footprint.viewgenerator.component.ComponentClassifier;
+import com.footprint.viewgenerator.layout.LayoutReferenceResolver;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Answers whether the Generate entry applies to a class without blocking the menu.
+ * <p>
+ * A class applies when it is one of the Android components or inflates a layout. Both need resolving, i.e.
+ * index queries, so the answer is computed on a pooled thread in smart mode and cached on the class until its
+ * file, the Java structure, the classpath or the component settings change. The menu only peeks at the cached
+ * answer; while there is none, the entry stays available and the answer is computed for the next time.
+ * <p>
+ * The computation gives way to write actions, i.e. typing, and is tried again after them; in dumb mode it is given
+ * up, the next menu update schedules it again.
+ */
+public final class GenerateApplicability {
+    private static final Key<CachedValue<Boolean>> APPLICABLE = Key.create("viewgenerator.generate.applicable");
+    private static final Key<Boolean> COMPUTING = Key.create("viewgenerator.generate.applicable.computing");
+    private static final int MAX_ATTEMPTS = 3;
+
+    private GenerateApplicability() {
+
+    }
+
+    /**
+     * Cached answer for the class, scheduling its computation when it is missing or outdated
+     *
+     * @param psiClass
+     * @return true while the answer is unknown
+     */
+    public static boolean isApplicable(@NotNull PsiClass psiClass) {
+        if (psiClass.isInterface() || psiClass.isAnnotationType()) {
+            return false;
+        }
+        CachedValue<Boolean> cached = psiClass.getUserData(APPLICABLE);
+        if (cached != null && cached.hasUpToDateValue()) {
+            return cached.getValue();
+        }
+        schedule(psiClass);
+        return true;
+    }
+
+    private static void schedule(@NotNull final PsiClass psiClass) {
+        if (psiClass.getUserData(COMPUTING) != null) {
+            return;
+        }
+        psiClass.putUserData(COMPUTING, Boolean.TRUE);
+        final Project project = psiClass.getProject();
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                        if (project.isDisposed() || DumbService.isDumb(project)) {
+                            return;
+                        }
+                        if (ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!project.isDisposed() && psiClass.isValid()) {
+                                    compute(psiClass);
+                                }
+                            }
+                        }, new ProgressIndicatorBase())) {
+                            return;
+                        }
+                        // interrupted by a write action
+                    }
+                } catch (IndexNotReadyException e) {
+                    // indexing started meanwhile
+                } finally {
+                    psiClass.putUserData(COMPUTING, null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Compute the answer for the class, or get the cached one; needs smart mode and a read action
+     */
+    public static boolean compute(@NotNull final PsiClass psiClass) {
+        final Project project = psiClass.getProject();
+        return CachedValuesManager.getManager(project).getCachedValue(psiClass, APPLICABLE,
+                new CachedValueProvider<Boolean>() {
+                    @Override
+                    public Result<Boolean> compute() {
+                        boolean applicable = !ComponentClassifier.getInstance(project).getKinds(psiClass).isEmpty()
+                                || !LayoutReferenceResolver.getInflatedLayouts(psiClass).isEmpty();
+                        return Result.create(applicable, psiClass.getContainingFile(),
+                                PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT,
+                                ProjectRootManager.getInstance(project), ComponentClassifier.getSettingsTracker());
+                    }
+                }, false);
+    }
+}
@@ -0,0 +1,170 @@
+package com.footprint.viewgenerator.action;
+
+import com.footprint.viewgenerator.common.GenerationPlanner;
+import com.footprint.viewgenerator.common.InjectWriter;
+import com.footprint.viewgenerator.common.Utils;
+import com.footprint.viewgenerator.form.EntryList;
+import com.footprint.viewgenerator.iface.ICancelListener;
+import com.footprint.viewgenerator.iface.IConfirmListener;
+import com.footprint.viewgenerator.iface.IPreviewListener;
+import com.footprint.viewgenerator.model.ElementTable;
+import com.footprint.viewgenerator.model.VGContext;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.ui.components.JBScrollPane;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+/**
+ * One generation: the dialog and the {@link VGContext} of a class and a layout, from showing the dialog until the
+ * code is written or the dialog is closed. Disposing it closes the dialog and releases the PSI pointers of the
+ * context; it is disposed with its project at the latest, see {@link GenerationSessionManager}.
+ * <p>
+ * The preview plans the generation like the confirmation does, in a background read action which gives way to
+ * write actions and is started again after them, and only shows the plan.
+ */
+public class GenerationSession implements IConfirmListener, ICancelListener, IPreviewListener, Disposable {
+    private final VGContext mContext;
+    private JFrame mDialog;
+    // read by the preview in the background
+    private volatile boolean mDisposed;
+
+    GenerationSession(VGContext context) {
+        mContext = context;
+    }
+
+    public void show(ElementTable elements) {
+        EntryList panel = new EntryList(mContext, elements, this, this, this);
+        mDialog = new JFrame();
+        mDialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        mDialog.getRootPane().setDefaultButton(panel.getConfirmButton());
+        mDialog.getContentPane().add(panel);
+        mDialog.setTitle("Được xào nấu lại bởi Võ Ngọc Sơn");
+        mDialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                // closed by the user
+                Disposer.dispose(GenerationSession.this);
+            }
+        });
+        mDialog.pack();
+        mDialog.setLocationRelativeTo(null);
+        mDialog.setVisible(true);
+    }
+
+    @Override
+    public void onCancel() {
+        Disposer.dispose(this);
+    }
+
+    @Override
+    public void onPreview(final VGContext context, ElementTable table) {
+        // planning updates the flags; the dialog keeps its own
+        final ElementTable elements = table.copy();
+        ProgressManager.getInstance().run(new Task.Backgroundable(context.getProject(), "Planning the generation", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                final String[] text = new String[1];
+                while (text[0] == null) {
+                    indicator.checkCanceled();
+                    DumbService.getInstance(context.getProject()).waitForSmartMode();
+                    if (mDisposed) {
+                        return;
+                    }
+                    try {
+                        ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!mDisposed && context.getmClass() != null) {
+                                    text[0] = new GenerationPlanner(context, elements).plan().getText();
+                                } else {
+                                    text[0] = "";
+                                }
+                            }
+                        }, new SensitiveProgressWrapper(indicator));
+                    } catch (IndexNotReadyException e) {
+                        // indexing started again, planned once it is done
+                    }
+                }
+                if (text[0].isEmpty()) {
+                    return;
+                }
+                ApplicationManager.getApplication().invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        showPreview(text[0]);
+                    }
+                });
+            }
+        });
+    }
+
+    private void showPreview(String text) {
+        if (mDialog == null) {
+            return; // closed meanwhile
+        }
+
+        JTextArea area = new JTextArea(text);
+        area.setEditable(false);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, area.getFont().getSize()));
+        JBScrollPane scrollPane = new JBScrollPane(area);
+        scrollPane.setPreferredSize(new Dimension(560, 320));
+        JOptionPane.showMessageDialog(mDialog, scrollPane, "Preview", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    @Override
+    public void onConfirm(final VGContext context, final ElementTable elements, final String fieldNamePrefix) {
+        closeDialog();
+        if (elements.getInjectCount() > 0 || elements.getClickCount() > 0) { // generate injections
+            DumbService.getInstance(context.getProject()).runWhenSmart(new Runnable() {
+                @Override
+                public void run() {
+                    if (mDisposed) {
+                        return; // the project was closed meanwhile
+                    }
+                    new InjectWriter(context, "Generate Injections", elements, fieldNamePrefix).generate(new Runnable() {
+                        @Override
+                        public void run() {
+                            Disposer.dispose(GenerationSession.this);
+                        }
+                    });
+                }
+            });
+        } else { // just notify user about no element selected
+            Utils.showInfoNotification(context.getProject(), "No injection was selected");
+            Disposer.dispose(this);
+        }
+    }
+
+    protected void closeDialog() {
+        if (mDialog == null) {
+            return;
+        }
+
+        mDialog.setVisible(false);
+        mDialog.dispose();
+        mDialog = null;
+    }
+
+    @Override
+    public void dispose() {
+        if (mDisposed) {
+            return;
+        }
+        mDisposed = true;
+        closeDialog();
+        mContext.dispose();
+    }
+}
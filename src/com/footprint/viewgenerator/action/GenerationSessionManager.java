@@ -0,0 +1,32 @@
+package com.footprint.viewgenerator.action;
+
+import com.footprint.viewgenerator.model.VGContext;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Owner of the {@link GenerationSession}s of a project. The action is shared by every project window, so it keeps
+ * no state; each invocation starts its own session here, any number of them may be open at once, and the ones
+ * still open are disposed with the project.
+ */
+public class GenerationSessionManager implements Disposable {
+
+    public static GenerationSessionManager getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, GenerationSessionManager.class);
+    }
+
+    @NotNull
+    public GenerationSession start(@NotNull VGContext context) {
+        GenerationSession session = new GenerationSession(context);
+        Disposer.register(this, session);
+        return session;
+    }
+
+    @Override
+    public void dispose() {
+        // the sessions are disposed as children
+    }
+}
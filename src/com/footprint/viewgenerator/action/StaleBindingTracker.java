@@ -0,0 +1,245 @@
+package com.footprint.viewgenerator.action;
+
+import com.footprint.viewgenerator.common.Utils;
+import com.footprint.viewgenerator.index.LayoutEntry;
+import com.footprint.viewgenerator.index.LayoutUsageIndex;
+import com.footprint.viewgenerator.layout.LayoutScanner;
+import com.footprint.viewgenerator.model.ClassBindingSnapshot;
+import com.footprint.viewgenerator.model.Element;
+import com.intellij.AppTopics;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileDocumentManagerAdapter;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.event.HyperlinkEvent;
+import javax.swing.event.HyperlinkListener;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flags the classes whose bindings a layout change left stale, found through {@link LayoutUsageIndex} instead of
+ * searching the project.
+ * <p>
+ * When a layout is saved, the IDs on disk are compared with the ones being saved; both are streamed by
+ * {@link LayoutScanner}, no PSI is built. If IDs came or went, the classes inflating the layout are checked in a
+ * background read action once indexes are ready: a class is stale if initView still binds a removed ID, or binds
+ * the layout but none of its new IDs. Stale classes are offered for regeneration and marked in the class chooser
+ * of {@link ViewGenerateAction} until they are generated again.
+ */
+public class StaleBindingTracker implements Disposable {
+    private static final Logger LOG = Logger.getInstance(StaleBindingTracker.class);
+    private static final String ACTION_ID = "footprint-asviewgeneration";
+
+    private final Project mProject;
+    // qualified names of the flagged classes
+    private final Set<String> mStaleClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public static StaleBindingTracker getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, StaleBindingTracker.class);
+    }
+
+    public StaleBindingTracker(@NotNull Project project) {
+        mProject = project;
+        project.getMessageBus().connect(this).subscribe(AppTopics.FILE_DOCUMENT_SYNC, new FileDocumentManagerAdapter() {
+            @Override
+            public void beforeDocumentSaving(@NotNull Document document) {
+                onSaving(document);
+            }
+        });
+    }
+
+    public boolean isStale(@NotNull PsiClass psiClass) {
+        String name = psiClass.getQualifiedName();
+        return name != null && mStaleClasses.contains(name);
+    }
+
+    /**
+     * The class is being generated again
+     */
+    public void clear(@NotNull PsiClass psiClass) {
+        String name = psiClass.getQualifiedName();
+        if (name != null) {
+            mStaleClasses.remove(name);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        mStaleClasses.clear();
+    }
+
+    private void onSaving(Document document) {
+        final VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+        if (file == null || mProject.isDisposed() || !Utils.isLayoutFile(file)
+                || !ProjectRootManager.getInstance(mProject).getFileIndex().isInContent(file)) {
+            return;
+        }
+
+        final byte[] saved;
+        try {
+            saved = file.contentsToByteArray(); // not written yet
+        } catch (IOException e) {
+            LOG.debug("Can't read layout " + file.getPath(), e);
+            return;
+        }
+        final byte[] saving = document.getText().getBytes(file.getCharset());
+
+        DumbService.getInstance(mProject).runWhenSmart(new Runnable() {
+            @Override
+            public void run() {
+                if (mProject.isDisposed()) {
+                    return;
+                }
+                ProgressManager.getInstance().run(new Task.Backgroundable(mProject, "Checking bindings of " + file.getName(), true) {
+                    private final List<SmartPsiElementPointer<PsiClass>> mFound = new ArrayList<SmartPsiElementPointer<PsiClass>>();
+
+                    @Override
+                    public void run(@NotNull ProgressIndicator indicator) {
+                        Set<String> before = getIds(LayoutScanner.scan(saved));
+                        Set<String> after = getIds(LayoutScanner.scan(saving));
+                        if (before.equals(after)) {
+                            return; // only attributes other than IDs changed
+                        }
+                        check(file, before, after, mFound, indicator);
+                    }
+
+                    @Override
+                    public void onSuccess() {
+                        if (!mFound.isEmpty()) {
+                            notifyStale(file, mFound);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void check(final VirtualFile layout, final Set<String> before, final Set<String> after,
+                       final List<SmartPsiElementPointer<PsiClass>> found, ProgressIndicator indicator) {
+        final Set<String> removed = new HashSet<String>(before);
+        removed.removeAll(after);
+        final Set<String> added = new HashSet<String>(after);
+        added.removeAll(before);
+
+        Runnable work = new Runnable() {
+            @Override
+            public void run() {
+                found.clear();
+                SmartPointerManager pointerManager = SmartPointerManager.getInstance(mProject);
+                for (PsiClass psiClass : LayoutUsageIndex.getInflatingClasses(mProject,
+                        layout.getNameWithoutExtension(), GlobalSearchScope.projectScope(mProject))) {
+                    if (isStale(ClassBindingSnapshot.of(psiClass), removed, added, after)) {
+                        found.add(pointerManager.createSmartPsiElementPointer(psiClass));
+                    }
+                }
+            }
+        };
+        try {
+            // a write action cancels the check, it is started again once the write action is done
+            while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(work, new SensitiveProgressWrapper(indicator))) {
+                indicator.checkCanceled();
+                if (mProject.isDisposed() || DumbService.isDumb(mProject)) {
+                    found.clear();
+                    return;
+                }
+            }
+        } catch (IndexNotReadyException e) {
+            LOG.debug("Indexing started again, bindings of " + layout.getName() + " not checked", e);
+            found.clear();
+        }
+    }
+
+    private static boolean isStale(ClassBindingSnapshot snapshot, Set<String> removed, Set<String> added, Set<String> ids) {
+        for (String id : removed) {
+            if (snapshot.getInitFieldName(id) != null) {
+                return true; // findViewById of an ID which is gone
+            }
+        }
+        if (added.isEmpty()) {
+            return false;
+        }
+        for (String id : added) {
+            if (snapshot.getInitFieldName(id) != null) {
+                return false; // already bound by hand
+            }
+        }
+        for (String id : ids) {
+            if (snapshot.getInitFieldName(id) != null) {
+                return true; // binds the layout, but not its new IDs
+            }
+        }
+        return false;
+    }
+
+    private void notifyStale(final VirtualFile layout, List<SmartPsiElementPointer<PsiClass>> found) {
+        final Map<String, SmartPsiElementPointer<PsiClass>> classes = new LinkedHashMap<String, SmartPsiElementPointer<PsiClass>>();
+        for (SmartPsiElementPointer<PsiClass> pointer : found) {
+            PsiClass psiClass = pointer.getElement();
+            String name = psiClass != null ? psiClass.getQualifiedName() : null;
+            if (name != null) {
+                mStaleClasses.add(name);
+                classes.put(name, pointer);
+            }
+        }
+        if (classes.isEmpty()) {
+            return;
+        }
+
+        StringBuilder text = new StringBuilder("Bindings of ").append(layout.getName()).append(" are stale in:");
+        for (String name : classes.keySet()) {
+            text.append("<br><a href=\"").append(name).append("\">").append(StringUtil.getShortName(name)).append("</a>");
+        }
+        Utils.showNotification(mProject, MessageType.WARNING, text.toString(), new HyperlinkListener() {
+            @Override
+            public void hyperlinkUpdate(HyperlinkEvent e) {
+                if (e.getEventType() == HyperlinkEvent.EventType.ACTIVATED) {
+                    regenerate(layout, classes.get(e.getDescription()));
+                }
+            }
+        });
+    }
+
+    private void regenerate(VirtualFile layout, @Nullable SmartPsiElementPointer<PsiClass> pointer) {
+        PsiClass psiClass = pointer != null ? pointer.getElement() : null;
+        PsiFile layoutFile = layout.isValid() ? PsiManager.getInstance(mProject).findFile(layout) : null;
+        AnAction action = ActionManager.getInstance().getAction(ACTION_ID);
+        if (psiClass == null || layoutFile == null || !(action instanceof ViewGenerateAction)) {
+            Utils.showErrorNotification(mProject, "The class or the layout was removed");
+            return;
+        }
+        ((ViewGenerateAction) action).generate(mProject, psiClass.getContainingFile(), layoutFile, psiClass);
+    }
+
+    private static Set<String> getIds(List<LayoutEntry> entries) {
+        Set<String> ids = new HashSet<String>();
+        for (LayoutEntry entry : entries) {
+            String id = Element.toFullID(entry.id);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
@@ -1,31 +1,43 @@
 package com.footprint.viewgenerator.action;
 
-import com.footprint.viewgenerator.common.InjectWriter;
 import com.footprint.viewgenerator.common.Utils;
-import com.footprint.viewgenerator.form.EntryList;
-import com.footprint.viewgenerator.iface.ICancelListener;
-import com.footprint.viewgenerator.iface.IConfirmListener;
-import com.footprint.viewgenerator.model.Element;
+import com.footprint.viewgenerator.index.LayoutUsageIndex;
+import com.footprint.viewgenerator.model.ElementTable;
 import com.footprint.viewgenerator.model.VGContext;
 import com.intellij.codeInsight.CodeInsightActionHandler;
 import com.intellij.codeInsight.generation.actions.BaseGenerateAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.ui.popup.PopupStep;
+import com.intellij.openapi.ui.popup.util.BaseListPopupStep;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.util.PsiUtilBase;
+import com.intellij.psi.xml.XmlFile;
+import org.jetbrains.annotations.NotNull;
 
-import javax.swing.*;
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by liquanmin on 16/2/24.
+ * <p>
+ * Available while indexes are being built: the layout is then found and scanned through the VFS, and the analysis
+ * of the class, which needs resolving, waits for smart mode. The action is shared by all projects, so everything
+ * about one generation lives in its {@link GenerationSession}.
  */
-public class ViewGenerateAction extends BaseGenerateAction implements IConfirmListener, ICancelListener {
-    protected JFrame mDialog;
-    protected VGContext context;
+public class ViewGenerateAction extends BaseGenerateAction implements DumbAware {
 
     public ViewGenerateAction() {
         super(new CodeInsightActionHandler() {
@@ -56,9 +68,16 @@ public class ViewGenerateAction extends BaseGenerateAction implements IConfirmLi
             return;
         }
 
+        if (isLayoutFile(file)) {
+            // invoked from a layout: generate into the class inflating it
+            chooseInflatingClassWhenSmart(project, editor, file);
+            return;
+        }
+
         PsiFile layout = Utils.getLayoutFileFromCaret(editor, file);
         if (layout == null) {
-            Utils.showErrorNotification(project, "No layout found");
+            Utils.showErrorNotification(project, DumbService.isDumb(project)
+                    ? "No layout found, references to R can't be resolved while indexing" : "No layout found");
             return;
         }
 
@@ -68,77 +87,131 @@ public class ViewGenerateAction extends BaseGenerateAction implements IConfirmLi
             return;
         }
 
-        //TODO SonVo Begin
-//        VirtualFile currentFile = file.getVirtualFile();
-//
-//        if (currentFile == null) {
-//            return;
-//        }
-//
-//        String layoutFileName = Utils.tryGetLayoutFileNameAutomatically(editor);
-//
-//        if (layoutFileName.isEmpty()) {
-//            Utils.showErrorNotification(project, "layoutFileName is null");
-//        }
-//
-//        layoutFileName = Utils.removeBlanksInString(layoutFileName);
-//
-//        XmlFile layoutXmlFile;
-//        Module module = ModuleUtil.findModuleForFile(currentFile, project);
-//        if (module == null) {
-//            layoutXmlFile = Utils.getXmlFileByName(project, layoutFileName);
-//        } else {
-//            layoutXmlFile = Utils.getXmlFileByNameInModule(module, layoutFileName);
-//        }
-        //TODO SonVo End
-
-//        ArrayList<Element> elements = Utils.getIDsFromLayout(layoutXmlFile);
-        ArrayList<Element> elements = Utils.getIDsFromLayout(layout);
-        if (elements.isEmpty()) {
-            Utils.showErrorNotification(project, "No IDs found in layout");
-            return;
-        }
-
-        context = new VGContext(project, file, layout, clazz);
-        context.parseClass();
-        context.preDealWithElements(elements);
-        showDialog(elements);
+        generate(project, file, layout, clazz);
     }
 
-    protected void showDialog(ArrayList<Element> elements) {
-        EntryList panel = new EntryList(context, elements, this, this);
-        mDialog = new JFrame();
-        mDialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
-        mDialog.getRootPane().setDefaultButton(panel.getConfirmButton());
-        mDialog.getContentPane().add(panel);
-        mDialog.setTitle("Được xào nấu lại bởi Võ Ngọc Sơn");
-        mDialog.pack();
-        mDialog.setLocationRelativeTo(null);
-        mDialog.setVisible(true);
+    @Override
+    protected boolean isValidForFile(@NotNull Project project, @NotNull Editor editor, @NotNull PsiFile file) {
+        return isLayoutFile(file) || super.isValidForFile(project, editor, file);
     }
 
+    /**
+     * Called by update() for every Generate popup, so it only peeks at the cached answer
+     */
     @Override
-    public void onCancel() {
-        closeDialog();
+    protected boolean isValidForClass(PsiClass targetClass) {
+        return GenerateApplicability.isApplicable(targetClass);
     }
 
-    @Override
-    public void onConfirm(VGContext context, ArrayList<Element> elements, String fieldNamePrefix) {
-        closeDialog();
-        Utils.dealElementList(elements);
-        if (Utils.getInjectCount(context, elements) > 0 || Utils.getClickCount(context, elements) > 0) { // generate injections
-            new InjectWriter(context, "Generate Injections", elements, fieldNamePrefix).execute();
-        } else { // just notify user about no element selected
-            Utils.showInfoNotification(context.getProject(), "No injection was selected");
+    private static boolean isLayoutFile(PsiFile file) {
+        VirtualFile virtualFile = file.getVirtualFile();
+        return file instanceof XmlFile && virtualFile != null && Utils.isLayoutFile(virtualFile);
+    }
+
+    private void chooseInflatingClassWhenSmart(final Project project, final Editor editor, final PsiFile layout) {
+        if (DumbService.isDumb(project)) {
+            Utils.showInfoNotification(project, "The classes inflating this layout are looked up once indexing finishes");
+        }
+        DumbService.getInstance(project).runWhenSmart(new Runnable() {
+            @Override
+            public void run() {
+                if (!editor.isDisposed() && layout.isValid()) {
+                    chooseInflatingClass(project, editor, layout);
+                }
+            }
+        });
+    }
+
+    /**
+     * Look the layout up in {@link LayoutUsageIndex} and let the user pick one of the classes inflating it
+     */
+    private void chooseInflatingClass(final Project project, Editor editor, final PsiFile layout) {
+        String layoutName = layout.getViewProvider().getVirtualFile().getNameWithoutExtension();
+        List<PsiClass> classes = LayoutUsageIndex.getInflatingClasses(project, layoutName,
+                GlobalSearchScope.projectScope(project));
+        if (classes.isEmpty()) {
+            Utils.showErrorNotification(project, "No class inflating this layout found");
+            return;
+        }
+        if (classes.size() == 1) {
+            generate(project, classes.get(0).getContainingFile(), layout, classes.get(0));
+            return;
         }
+
+        JBPopupFactory.getInstance().createListPopup(new BaseListPopupStep<PsiClass>("Generate Into", classes) {
+            @NotNull
+            @Override
+            public String getTextFor(PsiClass value) {
+                String name = String.valueOf(value.getQualifiedName());
+                return StaleBindingTracker.getInstance(project).isStale(value) ? name + " (stale bindings)" : name;
+            }
+
+            @Override
+            public PopupStep onChosen(final PsiClass selectedValue, boolean finalChoice) {
+                return doFinalStep(new Runnable() {
+                    @Override
+                    public void run() {
+                        generate(project, selectedValue.getContainingFile(), layout, selectedValue);
+                    }
+                });
+            }
+        }).showInBestPositionFor(editor);
+    }
+
+    protected void generate(final Project project, final PsiFile file, final PsiFile layout, final PsiClass clazz) {
+        StaleBindingTracker.getInstance(project).clear(clazz);
+        if (!DumbService.isDumb(project)) {
+            analyze(project, file, layout, clazz, new ElementTable(Utils.getIDsFromLayout(layout)));
+            return;
+        }
+
+        // indexes are being built: scan the layout now, analyze the class once they are ready
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Scanning " + layout.getName(), false) {
+            private ElementTable mElements;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                mElements = ApplicationManager.getApplication().runReadAction(new Computable<ElementTable>() {
+                    @Override
+                    public ElementTable compute() {
+                        return layout.isValid() ? new ElementTable(Utils.getIDsFromLayout(layout)) : null;
+                    }
+                });
+                indicator.setText("Waiting for indexing to finish");
+                DumbService.getInstance(project).waitForSmartMode();
+            }
+
+            @Override
+            public void onSuccess() {
+                if (mElements == null) {
+                    return;
+                }
+                // indexing may have started again meanwhile
+                DumbService.getInstance(project).runWhenSmart(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (file.isValid() && clazz.isValid()) {
+                            analyze(project, file, layout, clazz, mElements);
+                        }
+                    }
+                });
+            }
+        });
     }
 
-    protected void closeDialog() {
-        if (mDialog == null) {
+    protected void analyze(Project project, PsiFile file, PsiFile layout, PsiClass clazz, ElementTable elements) {
+        if (elements.isEmpty()) {
+            Utils.showErrorNotification(project, "No IDs found in layout");
             return;
         }
 
-        mDialog.setVisible(false);
-        mDialog.dispose();
+        VGContext context = new VGContext(project, file, layout, clazz);
+        if (!context.parseClass()) {
+            context.dispose();
+            return; // the class was removed meanwhile
+        }
+        context.preDealWithElements(elements);
+        GenerationSessionManager.getInstance(project).start(context).show(elements);
     }
 }
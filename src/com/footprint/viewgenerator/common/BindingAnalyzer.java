@@ -0,0 +1,386 @@
+package com.footprint.viewgenerator.common;
+
+import com.intellij.psi.*;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads view bindings from the structure of method bodies instead of their text: findViewById assignments and
+ * setOnClickListener receivers of initView, the IDs dispatched by onClick and the R.layout references used to
+ * inflate a layout. Casts, parentheses, whitespace, line breaks and {@code findViewById<T>} are all handled by
+ * the PSI, so nothing here ever builds the text of a statement.
+ */
+public final class BindingAnalyzer {
+    public static final String FIND_VIEW_BY_ID = "findViewById";
+    public static final String SET_ON_CLICK_LISTENER = "setOnClickListener";
+    public static final String GET_ID = "getId";
+
+    private BindingAnalyzer() {
+
+    }
+
+    /**
+     * Collect what initView binds
+     *
+     * @param body           body of initView
+     * @param initFieldNames filled with ID -> name of the field the view is assigned to
+     * @param clickViewNames filled with the names of the fields a listener is set on
+     */
+    public static void analyzeInitView(@NotNull PsiCodeBlock body, @NotNull final Map<String, String> initFieldNames,
+                                       @NotNull final Set<String> clickViewNames) {
+        body.accept(new BodyVisitor() {
+            @Override
+            public void visitAssignmentExpression(PsiAssignmentExpression expression) {
+                super.visitAssignmentExpression(expression);
+
+                String id = getFindViewById(expression.getRExpression());
+                String fieldName = getVariableName(expression.getLExpression());
+                if (id != null && fieldName != null) {
+                    initFieldNames.put(id, fieldName);
+                }
+            }
+
+            @Override
+            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                super.visitMethodCallExpression(expression);
+
+                PsiReferenceExpression method = expression.getMethodExpression();
+                if (SET_ON_CLICK_LISTENER.equals(method.getReferenceName())) {
+                    String fieldName = getVariableName(method.getQualifierExpression());
+                    if (fieldName != null) {
+                        clickViewNames.add(fieldName);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Collect the IDs onClick dispatches on, from switch cases and from {@code getId() == R.id.xxx} comparisons.
+     * Both {@code case R.id.xxx:} labels and {@code case R.id.xxx ->} rules are read, with any number of values.
+     *
+     * @param body     body of onClick
+     * @param clickIds filled with full IDs, e.g. R.id.title
+     */
+    public static void analyzeOnClick(@NotNull PsiCodeBlock body, @NotNull final Set<String> clickIds) {
+        body.accept(new BodyVisitor() {
+            @Override
+            public void visitStatement(PsiStatement statement) {
+                super.visitStatement(statement);
+
+                if (!isCaseLabel(statement)) {
+                    return;
+                }
+                // the values end at the colon of a label or the arrow of a rule
+                for (PsiElement child = statement.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (isToken(child, JavaTokenType.COLON) || isToken(child, JavaTokenType.ARROW)) {
+                        break;
+                    }
+                    if (child instanceof PsiExpression) {
+                        addId((PsiExpression) child);
+                    }
+                    for (PsiReferenceExpression reference : PsiTreeUtil.findChildrenOfType(child, PsiReferenceExpression.class)) {
+                        addId(reference);
+                    }
+                }
+            }
+
+            private void addId(PsiExpression expression) {
+                String id = getResourceReference(expression, "id");
+                if (id != null) {
+                    clickIds.add(id);
+                }
+            }
+
+            @Override
+            public void visitBinaryExpression(PsiBinaryExpression expression) {
+                super.visitBinaryExpression(expression);
+
+                IElementType sign = expression.getOperationTokenType();
+                if (sign != JavaTokenType.EQEQ && sign != JavaTokenType.NE) {
+                    return;
+                }
+                String id = getResourceReference(expression.getROperand(), "id");
+                if (id == null) {
+                    id = getResourceReference(expression.getLOperand(), "id");
+                }
+                if (id != null) {
+                    clickIds.add(id);
+                }
+            }
+        });
+    }
+
+    /**
+     * The first statement of the body which switches on {@code view.getId()}
+     *
+     * @param body body of onClick
+     * @return null if there is none
+     */
+    @Nullable
+    public static PsiSwitchStatement findClickSwitch(@NotNull PsiCodeBlock body) {
+        for (PsiStatement statement : body.getStatements()) {
+            if (statement instanceof PsiSwitchStatement
+                    && isGetIdCall(((PsiSwitchStatement) statement).getExpression())) {
+                return (PsiSwitchStatement) statement;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The first statement of the body which is an if comparing {@code view.getId()} with an ID
+     *
+     * @param body body of onClick
+     * @return the first if of the chain, null if there is none
+     */
+    @Nullable
+    public static PsiIfStatement findClickIf(@NotNull PsiCodeBlock body) {
+        for (PsiStatement statement : body.getStatements()) {
+            if (!(statement instanceof PsiIfStatement)) {
+                continue;
+            }
+            PsiExpression condition = PsiUtil.skipParenthesizedExprDown(((PsiIfStatement) statement).getCondition());
+            if (!(condition instanceof PsiBinaryExpression)
+                    || ((PsiBinaryExpression) condition).getOperationTokenType() != JavaTokenType.EQEQ) {
+                continue;
+            }
+            PsiBinaryExpression comparison = (PsiBinaryExpression) condition;
+            if (isGetIdCall(comparison.getLOperand()) && getResourceReference(comparison.getROperand(), "id") != null
+                    || isGetIdCall(comparison.getROperand()) && getResourceReference(comparison.getLOperand(), "id") != null) {
+                return (PsiIfStatement) statement;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The last if of an if - else if chain, the one new branches go after
+     */
+    @NotNull
+    public static PsiIfStatement getLastIf(@NotNull PsiIfStatement statement) {
+        while (statement.getElseBranch() instanceof PsiIfStatement) {
+            statement = (PsiIfStatement) statement.getElseBranch();
+        }
+        return statement;
+    }
+
+    /**
+     * Does the switch use {@code case X ->} rules rather than {@code case X:} labels?
+     *
+     * @param statement
+     * @return false for a switch without cases
+     */
+    public static boolean isRuleSwitch(@NotNull PsiSwitchStatement statement) {
+        PsiCodeBlock body = statement.getBody();
+        if (body == null) {
+            return false;
+        }
+        for (PsiStatement child : body.getStatements()) {
+            if (isCaseLabel(child)) {
+                for (PsiElement token = child.getFirstChild(); token != null; token = token.getNextSibling()) {
+                    if (isToken(token, JavaTokenType.ARROW)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the statement assigning a view to the field, e.g. to add its listener after it
+     *
+     * @param body
+     * @param fieldName
+     * @return null if the field is not assigned in the body
+     */
+    @Nullable
+    public static PsiStatement findAssignment(@NotNull PsiCodeBlock body, @NotNull String fieldName) {
+        for (PsiStatement statement : body.getStatements()) {
+            if (!(statement instanceof PsiExpressionStatement)) {
+                continue;
+            }
+            PsiExpression expression = ((PsiExpressionStatement) statement).getExpression();
+            if (expression instanceof PsiAssignmentExpression
+                    && fieldName.equals(getVariableName(((PsiAssignmentExpression) expression).getLExpression()))) {
+                return statement;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Does the body call the method, directly or nested in another statement?
+     *
+     * @param body
+     * @param methodName
+     * @return
+     */
+    public static boolean callsMethod(@Nullable PsiCodeBlock body, @NotNull final String methodName) {
+        if (body == null) {
+            return false;
+        }
+        final boolean[] found = new boolean[1];
+        body.accept(new BodyVisitor() {
+            @Override
+            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                if (methodName.equals(expression.getMethodExpression().getReferenceName())) {
+                    found[0] = true;
+                    stopWalking();
+                    return;
+                }
+                super.visitMethodCallExpression(expression);
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * The first R.layout.xxx reference in the element
+     *
+     * @param element a statement or an expression
+     * @return e.g. R.layout.activity_main, null if there is none
+     */
+    @Nullable
+    public static String findLayoutReference(@Nullable PsiElement element) {
+        if (element == null) {
+            return null;
+        }
+        if (element instanceof PsiReferenceExpression) {
+            String layout = getResourceReference((PsiExpression) element, "layout");
+            if (layout != null) {
+                return layout;
+            }
+        }
+
+        final String[] found = new String[1];
+        element.accept(new BodyVisitor() {
+            @Override
+            public void visitReferenceExpression(PsiReferenceExpression expression) {
+                found[0] = getResourceReference(expression, "layout");
+                if (found[0] != null) {
+                    stopWalking();
+                    return;
+                }
+                super.visitReferenceExpression(expression);
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * ID passed to findViewById, looking through casts and parentheses
+     *
+     * @param expression
+     * @return e.g. R.id.title, null if the expression is not a findViewById call
+     */
+    @Nullable
+    public static String getFindViewById(@Nullable PsiExpression expression) {
+        expression = skipCasts(expression);
+        if (!(expression instanceof PsiMethodCallExpression)) {
+            return null;
+        }
+        PsiMethodCallExpression call = (PsiMethodCallExpression) expression;
+        if (!FIND_VIEW_BY_ID.equals(call.getMethodExpression().getReferenceName())) {
+            return null;
+        }
+        PsiExpression[] arguments = call.getArgumentList().getExpressions();
+        return arguments.length == 1 ? getResourceReference(arguments[0], "id") : null;
+    }
+
+    /**
+     * Resource reference of the given type, e.g. R.id.xxx, android.R.id.xxx or com.example.R.id.xxx for "id"
+     *
+     * @param expression
+     * @param type       resource type, e.g. id or layout
+     * @return R.type.xxx, or android.R.type.xxx for framework resources; null if it is not such a reference
+     */
+    @Nullable
+    public static String getResourceReference(@Nullable PsiExpression expression, @NotNull String type) {
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        if (!(expression instanceof PsiReferenceExpression)) {
+            return null;
+        }
+        PsiReferenceExpression reference = (PsiReferenceExpression) expression;
+        PsiExpression typeExpression = reference.getQualifierExpression();
+        if (!(typeExpression instanceof PsiReferenceExpression)
+                || !type.equals(((PsiReferenceExpression) typeExpression).getReferenceName())) {
+            return null;
+        }
+        PsiExpression rExpression = ((PsiReferenceExpression) typeExpression).getQualifierExpression();
+        if (!(rExpression instanceof PsiReferenceExpression)
+                || !"R".equals(((PsiReferenceExpression) rExpression).getReferenceName())) {
+            return null;
+        }
+
+        PsiExpression rPackage = ((PsiReferenceExpression) rExpression).getQualifierExpression();
+        boolean android = rPackage instanceof PsiReferenceExpression
+                && "android".equals(((PsiReferenceExpression) rPackage).getReferenceName())
+                && ((PsiReferenceExpression) rPackage).getQualifierExpression() == null;
+        return (android ? "android.R." : "R.") + type + "." + reference.getReferenceName();
+    }
+
+    /**
+     * Name of the field or variable in {@code xxx} or {@code this.xxx}
+     */
+    @Nullable
+    private static String getVariableName(@Nullable PsiExpression expression) {
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        if (!(expression instanceof PsiReferenceExpression)) {
+            return null;
+        }
+        PsiReferenceExpression reference = (PsiReferenceExpression) expression;
+        PsiExpression qualifier = reference.getQualifierExpression();
+        if (qualifier != null && !(qualifier instanceof PsiThisExpression)) {
+            return null; // e.g. holder.title
+        }
+        return reference.getReferenceName();
+    }
+
+    /**
+     * {@code case} label or rule, read from the tokens so that it works with every version of the Java PSI
+     */
+    private static boolean isCaseLabel(PsiStatement statement) {
+        return isToken(statement.getFirstChild(), JavaTokenType.CASE_KEYWORD);
+    }
+
+    private static boolean isToken(@Nullable PsiElement element, IElementType type) {
+        return element instanceof PsiJavaToken && ((PsiJavaToken) element).getTokenType() == type;
+    }
+
+    /**
+     * {@code xxx.getId()}, e.g. the selector of a click switch
+     */
+    private static boolean isGetIdCall(@Nullable PsiExpression expression) {
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        return expression instanceof PsiMethodCallExpression
+                && GET_ID.equals(((PsiMethodCallExpression) expression).getMethodExpression().getReferenceName())
+                && ((PsiMethodCallExpression) expression).getArgumentList().getExpressions().length == 0;
+    }
+
+    @Nullable
+    private static PsiExpression skipCasts(@Nullable PsiExpression expression) {
+        expression = PsiUtil.skipParenthesizedExprDown(expression);
+        while (expression instanceof PsiTypeCastExpression) {
+            expression = PsiUtil.skipParenthesizedExprDown(((PsiTypeCastExpression) expression).getOperand());
+        }
+        return expression;
+    }
+
+    /**
+     * Walks a method body without descending into local and anonymous classes, whose code belongs to other methods
+     */
+    private static class BodyVisitor extends JavaRecursiveElementWalkingVisitor {
+        @Override
+        public void visitClass(PsiClass aClass) {
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.footprint.viewgenerator.common;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Collects the code generated for a class and applies it in as few PSI edits as possible: the imports as one range,
+ * the new fields as one range after the existing ones, the new methods as one range at the end of the class, and
+ * one replacement of the body of every changed method. Statements which are only extended, like a switch getting
+ * new cases or an if getting an else branch, are edited in place instead, so that a large statement is only touched
+ * where code is added; they must not be inside one of the rebuilt bodies.
+ * <p>
+ * Planning only reads the PSI. {@link #prepare()} parses the planned code into detached PSI, which only needs a
+ * read action, and remembers the modification stamp of the file; {@link #apply()} then just attaches the prepared
+ * elements in a write action. Anchors must belong to the body they are given with, and are only valid as long as
+ * the file is unchanged, see {@link #isUpToDate()}.
+ * <p>
+ * {@link #apply()} returns what it attached, down to the inserted and replaced statements of the changed bodies,
+ * so that only the generated code is formatted afterwards.
+ */
+public class ClassRewriter {
+    private final PsiClass mClass;
+    private final PsiElementFactory mFactory;
+    private final Set<String> mImports = new LinkedHashSet<String>();
+    private final List<PsiClass> mInterfaces = new ArrayList<PsiClass>();
+    private final StringBuilder mFields = new StringBuilder();
+    private final StringBuilder mMethods = new StringBuilder();
+    private final Map<PsiCodeBlock, BodyEdit> mBodies = new LinkedHashMap<PsiCodeBlock, BodyEdit>();
+    private final List<InPlaceEdit> mInPlace = new ArrayList<InPlaceEdit>();
+
+    // detached PSI built by prepare()
+    private long mStamp = -1;
+    private PsiImportStatementBase[] mPreparedImports = PsiImportStatementBase.EMPTY_ARRAY;
+    private final List<PsiJavaCodeReferenceElement> mPreparedInterfaces = new ArrayList<PsiJavaCodeReferenceElement>();
+    private PsiField[] mPreparedFields = PsiField.EMPTY_ARRAY;
+    private PsiMethod[] mPreparedMethods = PsiMethod.EMPTY_ARRAY;
+    private final Map<PsiCodeBlock, PsiCodeBlock> mPreparedBodies = new LinkedHashMap<PsiCodeBlock, PsiCodeBlock>();
+    // ranges of the inserted and replaced text in the prepared bodies
+    private final Map<PsiCodeBlock, List<TextRange>> mGeneratedRanges = new HashMap<PsiCodeBlock, List<TextRange>>();
+
+    public ClassRewriter(@NotNull PsiClass psiClass) {
+        mClass = psiClass;
+        mFactory = JavaPsiFacade.getElementFactory(psiClass.getProject());
+    }
+
+    @NotNull
+    public PsiClass getPsiClass() {
+        return mClass;
+    }
+
+    /**
+     * Import a class into the file of the class
+     */
+    public void addImport(@NotNull String qualifiedName) {
+        mImports.add(qualifiedName);
+    }
+
+    public void addImplements(@NotNull PsiClass anInterface) {
+        mInterfaces.add(anInterface);
+    }
+
+    public void addField(@NotNull String text) {
+        mFields.append(text).append('\n');
+    }
+
+    public void addMethod(@NotNull String text) {
+        mMethods.append(text).append('\n');
+    }
+
+    /**
+     * Insert a statement before the anchor, or at the end of the body when there is none
+     */
+    public void insertBefore(@NotNull PsiCodeBlock body, @Nullable PsiElement anchor, @NotNull String statement) {
+        BodyEdit edit = getEdit(body);
+        if (anchor == null) {
+            edit.end.append('\n').append(statement);
+        } else {
+            edit.get(edit.before, anchor).append(statement).append('\n');
+        }
+    }
+
+    /**
+     * Insert a statement after the anchor, or at the start of the body when there is none
+     */
+    public void insertAfter(@NotNull PsiCodeBlock body, @Nullable PsiElement anchor, @NotNull String statement) {
+        BodyEdit edit = getEdit(body);
+        if (anchor == null) {
+            edit.start.append('\n').append(statement);
+        } else {
+            edit.get(edit.after, anchor).append('\n').append(statement);
+        }
+    }
+
+    public void replace(@NotNull PsiCodeBlock body, @NotNull PsiElement statement, @NotNull String text) {
+        BodyEdit edit = getEdit(body);
+        edit.replaced.put(edit.getChild(statement), text);
+    }
+
+    /**
+     * Add cases at the end of the switch, before its closing brace; the rest of the switch is left as it is
+     */
+    public void addCases(@NotNull PsiSwitchStatement statement, @NotNull String cases) {
+        mInPlace.add(new InPlaceEdit(InPlaceEdit.Kind.CASES, statement, cases));
+    }
+
+    /**
+     * Add an else branch to an if which has none, e.g. {@code if (...) {...}} for an else if
+     */
+    public void addElse(@NotNull PsiIfStatement statement, @NotNull String branch) {
+        if (statement.getElseBranch() != null) {
+            throw new IllegalArgumentException("The if has an else branch already");
+        }
+        mInPlace.add(new InPlaceEdit(InPlaceEdit.Kind.ELSE, statement, branch));
+    }
+
+    /**
+     * Insert if branches, e.g. {@code if (...) {...} else if (...) {...}}, in front of the final else of the if;
+     * the final else is moved behind them as it is, not parsed again from its text
+     */
+    public void insertElseIf(@NotNull PsiIfStatement statement, @NotNull String branches) {
+        if (statement.getElseBranch() == null) {
+            throw new IllegalArgumentException("The if has no else branch");
+        }
+        mInPlace.add(new InPlaceEdit(InPlaceEdit.Kind.ELSE_IF, statement, branches));
+    }
+
+    public boolean isEmpty() {
+        return mImports.isEmpty() && mInterfaces.isEmpty() && mFields.length() == 0 && mMethods.length() == 0
+                && mBodies.isEmpty() && mInPlace.isEmpty();
+    }
+
+    /**
+     * Parse everything collected so far into detached PSI; only needs a read action
+     */
+    public void prepare() {
+        mStamp = mClass.getContainingFile().getModificationStamp();
+        mPreparedImports = prepareImports();
+        mPreparedInterfaces.clear();
+        for (PsiClass anInterface : mInterfaces) {
+            mPreparedInterfaces.add(mFactory.createClassReferenceElement(anInterface));
+        }
+        mPreparedFields = mFields.length() == 0 ? PsiField.EMPTY_ARRAY
+                : mFactory.createClassFromText(mFields.toString(), mClass).getFields();
+        mPreparedMethods = mMethods.length() == 0 ? PsiMethod.EMPTY_ARRAY
+                : mFactory.createClassFromText(mMethods.toString(), mClass).getMethods();
+        mPreparedBodies.clear();
+        mGeneratedRanges.clear();
+        for (BodyEdit edit : mBodies.values()) {
+            List<TextRange> generated = new ArrayList<TextRange>();
+            PsiCodeBlock prepared = mFactory.createCodeBlockFromText(edit.getText(generated), edit.body);
+            mPreparedBodies.put(edit.body, prepared);
+            mGeneratedRanges.put(prepared, generated);
+        }
+        for (InPlaceEdit edit : mInPlace) {
+            for (PsiCodeBlock body : mBodies.keySet()) {
+                if (PsiTreeUtil.isAncestor(body, edit.target, false)) {
+                    throw new IllegalStateException("A statement edited in place is in a rebuilt body");
+                }
+            }
+            edit.prepare(mFactory);
+        }
+    }
+
+    /**
+     * Is the file unchanged since {@link #prepare()}?
+     */
+    public boolean isUpToDate() {
+        return mStamp >= 0 && mClass.isValid() && mClass.getContainingFile().getModificationStamp() == mStamp;
+    }
+
+    /**
+     * Attach the prepared PSI; must run in a write action. The caller checks {@link #isUpToDate()} first, before
+     * applying any of the rewriters of the same file.
+     *
+     * @return the attached imports, references, fields and methods, and the generated statements of the bodies
+     */
+    @NotNull
+    public List<PsiElement> apply() {
+        List<PsiElement> generated = new ArrayList<PsiElement>();
+        if (mPreparedImports.length > 0) {
+            PsiImportList importList = ((PsiJavaFile) mClass.getContainingFile()).getImportList();
+            if (importList != null) {
+                PsiElement first = importList.addRange(mPreparedImports[0], mPreparedImports[mPreparedImports.length - 1]);
+                collect(first, PsiImportStatementBase.class, mPreparedImports.length, generated);
+            }
+        }
+        for (InPlaceEdit edit : mInPlace) {
+            edit.apply(generated);
+        }
+        PsiReferenceList implementsList = mClass.getImplementsList();
+        for (PsiJavaCodeReferenceElement reference : mPreparedInterfaces) {
+            if (implementsList != null) {
+                generated.add(implementsList.add(reference));
+            }
+        }
+        for (Map.Entry<PsiCodeBlock, PsiCodeBlock> entry : mPreparedBodies.entrySet()) {
+            if (entry.getKey().isValid()) {
+                PsiElement body = entry.getKey().replace(entry.getValue());
+                collectGenerated(body, mGeneratedRanges.get(entry.getValue()), generated);
+            }
+        }
+        applyFields(generated);
+        applyMethods(generated);
+        mStamp = -1;
+        return generated;
+    }
+
+    /**
+     * The children of the replaced body which overlap the generated text; the body has the prepared text
+     */
+    private static void collectGenerated(PsiElement body, List<TextRange> ranges, List<PsiElement> generated) {
+        if (ranges == null || ranges.isEmpty()) {
+            return;
+        }
+        int bodyStart = body.getTextRange().getStartOffset();
+        for (PsiElement child = body.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof PsiWhiteSpace) {
+                continue;
+            }
+            TextRange range = child.getTextRange().shiftRight(-bodyStart);
+            for (TextRange generatedRange : ranges) {
+                if (range.intersectsStrict(generatedRange)) {
+                    generated.add(child);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The elements from the first added one of a range up to the end, or the element, skipping whitespace
+     */
+    private static void collect(PsiElement first, @Nullable PsiElement end, List<PsiElement> generated) {
+        for (PsiElement element = first; element != null && element != end; element = element.getNextSibling()) {
+            if (!(element instanceof PsiWhiteSpace)) {
+                generated.add(element);
+            }
+        }
+    }
+
+    /**
+     * The first count elements of the type, starting at the first added one of a range
+     */
+    private static void collect(PsiElement first, Class<? extends PsiElement> type, int count, List<PsiElement> generated) {
+        for (PsiElement element = first; element != null && count > 0; element = element.getNextSibling()) {
+            if (type.isInstance(element)) {
+                generated.add(element);
+                count--;
+            }
+        }
+    }
+
+    private PsiImportStatementBase[] prepareImports() {
+        PsiFile file = mClass.getContainingFile();
+        if (!(file instanceof PsiJavaFile) || mImports.isEmpty()) {
+            return PsiImportStatementBase.EMPTY_ARRAY;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (String qualifiedName : mImports) {
+            text.append(Definitions.IMPORT).append(qualifiedName).append(";\n");
+        }
+        PsiJavaFile dummy = (PsiJavaFile) PsiFileFactory.getInstance(mClass.getProject())
+                .createFileFromText("_Dummy_.java", JavaFileType.INSTANCE, text);
+        PsiImportList dummyImports = dummy.getImportList();
+        return dummyImports != null ? dummyImports.getAllImportStatements() : PsiImportStatementBase.EMPTY_ARRAY;
+    }
+
+    private void applyFields(List<PsiElement> generated) {
+        PsiField[] fields = mPreparedFields;
+        if (fields.length == 0) {
+            return;
+        }
+
+        // after the last field, like PsiClass.add would place them
+        PsiField[] existing = mClass.getFields();
+        PsiElement anchor = existing.length > 0 ? existing[existing.length - 1] : mClass.getLBrace();
+        if (anchor == null) {
+            for (PsiField field : fields) {
+                generated.add(mClass.add(field));
+            }
+            return;
+        }
+        PsiElement first = mClass.addRangeAfter(fields[0], fields[fields.length - 1], anchor);
+        collect(first, PsiField.class, fields.length, generated);
+    }
+
+    private void applyMethods(List<PsiElement> generated) {
+        PsiMethod[] methods = mPreparedMethods;
+        if (methods.length == 0) {
+            return;
+        }
+
+        PsiElement anchor = mClass.getRBrace();
+        if (anchor == null) {
+            for (PsiMethod method : methods) {
+                generated.add(mClass.add(method));
+            }
+            return;
+        }
+        PsiElement first = mClass.addRangeBefore(methods[0], methods[methods.length - 1], anchor);
+        collect(first, PsiMethod.class, methods.length, generated);
+    }
+
+    private BodyEdit getEdit(PsiCodeBlock body) {
+        BodyEdit edit = mBodies.get(body);
+        if (edit == null) {
+            edit = new BodyEdit(body);
+            mBodies.put(body, edit);
+        }
+        return edit;
+    }
+
+    /**
+     * Code added to a single statement, parsed in a statement of the same kind and attached as a range
+     */
+    private static class InPlaceEdit {
+        enum Kind {CASES, ELSE, ELSE_IF}
+
+        final Kind kind;
+        final PsiStatement target;
+        final String text;
+        // the range of the prepared elements to attach
+        PsiElement first;
+        PsiElement last;
+
+        InPlaceEdit(Kind kind, PsiStatement target, String text) {
+            this.kind = kind;
+            this.target = target;
+            this.text = text;
+        }
+
+        void prepare(PsiElementFactory factory) {
+            if (kind == Kind.CASES) {
+                PsiSwitchStatement dummy = (PsiSwitchStatement) factory.createStatementFromText(
+                        "switch (0) {\n" + text + "\n}", target);
+                PsiCodeBlock body = dummy.getBody();
+                first = PsiTreeUtil.skipSiblingsForward(body.getLBrace(), PsiWhiteSpace.class);
+                last = PsiTreeUtil.skipSiblingsBackward(body.getRBrace(), PsiWhiteSpace.class);
+                if (first == body.getRBrace()) {
+                    first = last = null; // no cases
+                }
+            } else if (kind == Kind.ELSE) {
+                PsiIfStatement dummy = (PsiIfStatement) factory.createStatementFromText("if (true) {} else " + text, target);
+                first = dummy.getElseElement();
+                last = dummy.getElseBranch();
+            } else {
+                // the empty else is a placeholder for the final else of the target
+                first = last = factory.createStatementFromText(text + " else {}", target);
+            }
+        }
+
+        void apply(List<PsiElement> generated) {
+            if (!target.isValid() || first == null || last == null) {
+                return;
+            }
+            if (kind == Kind.CASES) {
+                PsiCodeBlock body = ((PsiSwitchStatement) target).getBody();
+                PsiJavaToken rBrace = body != null ? body.getRBrace() : null;
+                if (rBrace != null) {
+                    collect(body.addRangeBefore(first, last, rBrace), rBrace, generated);
+                }
+            } else if (kind == Kind.ELSE) {
+                PsiIfStatement statement = (PsiIfStatement) target;
+                PsiElement anchor = statement.getThenBranch() != null ? statement.getThenBranch() : statement.getRParenth();
+                if (anchor != null) {
+                    collect(statement.addRangeAfter(first, last, anchor), null, generated);
+                }
+            } else {
+                PsiStatement elseBranch = ((PsiIfStatement) target).getElseBranch();
+                if (elseBranch == null) {
+                    return;
+                }
+                // the new branches are the ifs up to the placeholder
+                int branches = 1;
+                PsiIfStatement lastIf = (PsiIfStatement) first;
+                while (lastIf.getElseBranch() instanceof PsiIfStatement) {
+                    lastIf = (PsiIfStatement) lastIf.getElseBranch();
+                    branches++;
+                }
+                PsiStatement placeholder = lastIf.getElseBranch();
+                if (placeholder == null) {
+                    return;
+                }
+                placeholder.replace(elseBranch);
+                PsiElement branch = elseBranch.replace(first);
+                for (int i = 0; i < branches && branch instanceof PsiIfStatement; i++) {
+                    PsiStatement next = ((PsiIfStatement) branch).getElseBranch();
+                    collect(branch.getFirstChild(), next, generated);
+                    branch = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * The new text of a body, built from the text of its children with the insertions and replacements
+     */
+    private static class BodyEdit {
+        final PsiCodeBlock body;
+        final StringBuilder start = new StringBuilder();
+        final StringBuilder end = new StringBuilder();
+        final Map<PsiElement, StringBuilder> before = new HashMap<PsiElement, StringBuilder>();
+        final Map<PsiElement, StringBuilder> after = new HashMap<PsiElement, StringBuilder>();
+        final Map<PsiElement, String> replaced = new HashMap<PsiElement, String>();
+
+        BodyEdit(PsiCodeBlock body) {
+            this.body = body;
+        }
+
+        PsiElement getChild(PsiElement element) {
+            if (element.getParent() == body) {
+                return element;
+            }
+            PsiElement child = PsiTreeUtil.findPrevParent(body, element);
+            if (child == null) {
+                throw new IllegalArgumentException("The anchor is not in the body");
+            }
+            return child;
+        }
+
+        StringBuilder get(Map<PsiElement, StringBuilder> edits, PsiElement anchor) {
+            PsiElement child = getChild(anchor);
+            StringBuilder text = edits.get(child);
+            if (text == null) {
+                text = new StringBuilder();
+                edits.put(child, text);
+            }
+            return text;
+        }
+
+        /**
+         * @param generated receives the ranges of the inserted and replaced text
+         */
+        String getText(List<TextRange> generated) {
+            PsiJavaToken lBrace = body.getLBrace();
+            PsiJavaToken rBrace = body.getRBrace();
+            // the end goes before the line break and indent of the closing brace, so they stay in front of it
+            PsiElement endAnchor = rBrace;
+            if (rBrace != null && rBrace.getPrevSibling() instanceof PsiWhiteSpace) {
+                endAnchor = rBrace.getPrevSibling();
+            }
+            StringBuilder text = new StringBuilder(body.getTextLength() + start.length() + end.length() + 64);
+            if (lBrace == null) {
+                text.append('{');
+                append(text, start, generated);
+            }
+            for (PsiElement child = body.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child == endAnchor && end.length() > 0) {
+                    append(text, end, generated);
+                    if (endAnchor == rBrace) {
+                        text.append('\n');
+                    }
+                }
+                append(text, before.get(child), generated);
+                String replacement = replaced.get(child);
+                if (replacement != null) {
+                    append(text, replacement, generated);
+                } else {
+                    text.append(child.getText());
+                }
+                append(text, after.get(child), generated);
+                if (child == lBrace) {
+                    append(text, start, generated);
+                }
+            }
+            if (rBrace == null) {
+                append(text, end, generated);
+                text.append("\n}");
+            }
+            return text.toString();
+        }
+
+        private static void append(StringBuilder text, @Nullable CharSequence inserted, List<TextRange> generated) {
+            if (inserted == null || inserted.length() == 0) {
+                return;
+            }
+            int startOffset = text.length();
+            text.append(inserted);
+            generated.add(new TextRange(startOffset, text.length()));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.footprint.viewgenerator.common;
+
+import com.footprint.viewgenerator.Settings.Settings;
+import com.footprint.viewgenerator.iface.FieldNamingStrategy;
+import com.intellij.ide.util.PropertiesComponent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The built-in {@link FieldNamingStrategy}s, and the snapshot of the configured one
+ */
+public final class FieldNamingStrategies {
+
+    public enum Style {
+        PREFIX("Prefix + camelCase, e.g. mUserName"),
+        NONE("camelCase, e.g. userName"),
+        HUNGARIAN("View type + camelCase, e.g. tvUserName"),
+        KOTLIN("ID as is, like Kotlin synthetic properties, e.g. user_name");
+
+        private final String mDescription;
+
+        Style(String description) {
+            mDescription = description;
+        }
+
+        @Override
+        public String toString() {
+            return mDescription;
+        }
+    }
+
+    private FieldNamingStrategies() {
+
+    }
+
+    /**
+     * Capture the configured naming once, so a generation doesn't read the settings for every element
+     */
+    @NotNull
+    public static FieldNamingStrategy snapshot() {
+        FieldNamingStrategy strategy = create(getStyle(), Utils.getPrefix());
+        if (PropertiesComponent.getInstance().getBoolean(Settings.QUALIFY_INCLUDED_IDS, false)) {
+            strategy = includeQualified(strategy);
+        }
+        return strategy;
+    }
+
+    @NotNull
+    public static Style getStyle() {
+        String value = PropertiesComponent.getInstance().getValue(Settings.NAMING_STYLE);
+        if (value != null) {
+            for (Style style : Style.values()) {
+                if (style.name().equals(value)) {
+                    return style;
+                }
+            }
+        }
+        return Style.PREFIX;
+    }
+
+    @NotNull
+    public static FieldNamingStrategy create(@NotNull Style style, @Nullable String prefix) {
+        switch (style) {
+            case NONE:
+                return prefixed("");
+            case HUNGARIAN:
+                return new Hungarian();
+            case KOTLIN:
+                return new Kotlin();
+            default:
+                return prefixed(prefix != null ? prefix : "");
+        }
+    }
+
+    /**
+     * prefix + camelCase, the first word capitalized when there is a prefix: mUserName, userName
+     */
+    @NotNull
+    public static FieldNamingStrategy prefixed(@NotNull String prefix) {
+        return new Prefixed(prefix);
+    }
+
+    /**
+     * Qualify the IDs of included layouts with the name of the include: headerTitle for title of header.xml
+     */
+    @NotNull
+    public static FieldNamingStrategy includeQualified(@NotNull FieldNamingStrategy strategy) {
+        return new IncludeQualified(strategy);
+    }
+
+    private static final class Prefixed implements FieldNamingStrategy {
+        private final String mPrefix;
+
+        Prefixed(String prefix) {
+            mPrefix = prefix;
+        }
+
+        @NotNull
+        @Override
+        public String getFieldName(@NotNull String id, @NotNull String viewName, @Nullable String includedLayout) {
+            StringBuilder name = new StringBuilder(mPrefix.length() + id.length());
+            name.append(mPrefix);
+            return TextScanner.appendSnakeAsCamel(id, !mPrefix.isEmpty(), name).toString();
+        }
+    }
+
+    private static final class Hungarian implements FieldNamingStrategy {
+
+        @NotNull
+        @Override
+        public String getFieldName(@NotNull String id, @NotNull String viewName, @Nullable String includedLayout) {
+            // the capitals of the type: TextView -> tv, RecyclerView -> rv
+            StringBuilder name = new StringBuilder(id.length() + 4);
+            for (int i = 0; i < viewName.length(); i++) {
+                if (Character.isUpperCase(viewName.charAt(i))) {
+                    name.append(Character.toLowerCase(viewName.charAt(i)));
+                }
+            }
+            // tv_title is already tvTitle
+            if (name.length() == 0 || id.startsWith(name + "_")) {
+                name.setLength(0);
+                return TextScanner.appendSnakeAsCamel(id, false, name).toString();
+            }
+            return TextScanner.appendSnakeAsCamel(id, true, name).toString();
+        }
+    }
+
+    private static final class Kotlin implements FieldNamingStrategy {
+
+        @NotNull
+        @Override
+        public String getFieldName(@NotNull String id, @NotNull String viewName, @Nullable String includedLayout) {
+            return id;
+        }
+    }
+
+    private static final class IncludeQualified implements FieldNamingStrategy {
+        private final FieldNamingStrategy mDelegate;
+
+        IncludeQualified(FieldNamingStrategy delegate) {
+            mDelegate = delegate;
+        }
+
+        @NotNull
+        @Override
+        public String getFieldName(@NotNull String id, @NotNull String viewName, @Nullable String includedLayout) {
+            if (includedLayout == null) {
+                return mDelegate.getFieldName(id, viewName, null);
+            }
+            return mDelegate.getFieldName(includedLayout + "_" + id, viewName, null);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.footprint.viewgenerator.common;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * The code a generation adds to the classes, computed by {@link GenerationPlanner} as the difference between the
+ * checked elements and the bindings the classes already have. Building a plan only reads the PSI, so it serves as
+ * a dry run for the preview; {@link InjectWriter} applies it in one write command.
+ * <p>
+ * Every change is kept twice: in the {@link ClassRewriter} of its class, which applies it, and as a {@link Change}
+ * which only holds text, for the preview and for comparing plans. A class which has all its bindings already gets
+ * an empty plan.
+ */
+public class GenerationPlan {
+    private final Map<PsiClass, ClassRewriter> mRewriters = new LinkedHashMap<PsiClass, ClassRewriter>();
+    private final List<Change> mChanges = new ArrayList<Change>();
+    private final List<String> mProblems = new ArrayList<String>();
+    // file of the generated ViewHolder, opened once the code is applied
+    private VirtualFile mFileToOpen;
+
+    public enum Kind {
+        IMPORT("import"), IMPLEMENTS("implements"), FIELD("field"), METHOD("method"), INSERT("insert"),
+        REPLACE("replace");
+
+        private final String mLabel;
+
+        Kind(String label) {
+            mLabel = label;
+        }
+
+        public String getLabel() {
+            return mLabel;
+        }
+    }
+
+    /**
+     * One planned change, as text
+     */
+    public static class Change {
+        public final Kind kind;
+        public final String className;
+        // the method whose body changes, null for the changes of the class itself
+        public final String methodName;
+        public final String text;
+
+        public Change(@NotNull Kind kind, @NotNull String className, @Nullable String methodName, @NotNull String text) {
+            this.kind = kind;
+            this.className = className;
+            this.methodName = methodName;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Change)) {
+                return false;
+            }
+            Change change = (Change) o;
+            return kind == change.kind && className.equals(change.className)
+                    && (methodName != null ? methodName.equals(change.methodName) : change.methodName == null)
+                    && text.equals(change.text);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = kind.hashCode();
+            result = 31 * result + className.hashCode();
+            result = 31 * result + (methodName != null ? methodName.hashCode() : 0);
+            result = 31 * result + text.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return kind.getLabel() + (methodName != null ? " in " + methodName + "()" : "") + ": " + text;
+        }
+    }
+
+    public void addImport(@NotNull PsiClass psiClass, @NotNull String qualifiedName) {
+        getRewriter(psiClass).addImport(qualifiedName);
+        record(Kind.IMPORT, psiClass, null, qualifiedName);
+    }
+
+    public void addImplements(@NotNull PsiClass psiClass, @NotNull PsiClass anInterface) {
+        getRewriter(psiClass).addImplements(anInterface);
+        record(Kind.IMPLEMENTS, psiClass, null, String.valueOf(anInterface.getQualifiedName()));
+    }
+
+    public void addField(@NotNull PsiClass psiClass, @NotNull String text) {
+        getRewriter(psiClass).addField(text);
+        record(Kind.FIELD, psiClass, null, text);
+    }
+
+    public void addMethod(@NotNull PsiClass psiClass, @NotNull String text) {
+        getRewriter(psiClass).addMethod(text);
+        record(Kind.METHOD, psiClass, null, text);
+    }
+
+    /**
+     * @see ClassRewriter#insertBefore(PsiCodeBlock, PsiElement, String)
+     */
+    public void insertBefore(@NotNull PsiClass psiClass, @NotNull PsiCodeBlock body, @Nullable PsiElement anchor,
+                             @NotNull String statement) {
+        getRewriter(psiClass).insertBefore(body, anchor, statement);
+        record(Kind.INSERT, psiClass, body, statement);
+    }
+
+    /**
+     * @see ClassRewriter#insertAfter(PsiCodeBlock, PsiElement, String)
+     */
+    public void insertAfter(@NotNull PsiClass psiClass, @NotNull PsiCodeBlock body, @Nullable PsiElement anchor,
+                            @NotNull String statement) {
+        getRewriter(psiClass).insertAfter(body, anchor, statement);
+        record(Kind.INSERT, psiClass, body, statement);
+    }
+
+    public void replace(@NotNull PsiClass psiClass, @NotNull PsiCodeBlock body, @NotNull PsiElement statement,
+                        @NotNull String text) {
+        getRewriter(psiClass).replace(body, statement, text);
+        record(Kind.REPLACE, psiClass, body, text);
+    }
+
+    /**
+     * @see ClassRewriter#addCases(PsiSwitchStatement, String)
+     */
+    public void addCases(@NotNull PsiClass psiClass, @NotNull PsiSwitchStatement statement, @NotNull String cases) {
+        getRewriter(psiClass).addCases(statement, cases);
+        record(Kind.INSERT, psiClass, statement, cases);
+    }
+
+    /**
+     * @see ClassRewriter#addElse(PsiIfStatement, String)
+     */
+    public void addElse(@NotNull PsiClass psiClass, @NotNull PsiIfStatement statement, @NotNull String branch) {
+        getRewriter(psiClass).addElse(statement, branch);
+        record(Kind.INSERT, psiClass, statement, "else " + branch);
+    }
+
+    /**
+     * @see ClassRewriter#insertElseIf(PsiIfStatement, String)
+     */
+    public void insertElseIf(@NotNull PsiClass psiClass, @NotNull PsiIfStatement statement, @NotNull String branches) {
+        getRewriter(psiClass).insertElseIf(statement, branches);
+        record(Kind.INSERT, psiClass, statement, "else " + branches);
+    }
+
+    /**
+     * Something the planner couldn't do; reported, the rest of the plan still applies
+     */
+    public void addProblem(@NotNull String problem) {
+        mProblems.add(problem);
+    }
+
+    public void setFileToOpen(@Nullable VirtualFile file) {
+        mFileToOpen = file;
+    }
+
+    @Nullable
+    public VirtualFile getFileToOpen() {
+        return mFileToOpen;
+    }
+
+    @NotNull
+    public List<Change> getChanges() {
+        return Collections.unmodifiableList(mChanges);
+    }
+
+    @NotNull
+    public List<String> getProblems() {
+        return Collections.unmodifiableList(mProblems);
+    }
+
+    public boolean isEmpty() {
+        return mChanges.isEmpty();
+    }
+
+    /**
+     * Build the PSI of the changes; needs a read action
+     */
+    public void prepare() {
+        for (ClassRewriter rewriter : mRewriters.values()) {
+            rewriter.prepare();
+        }
+    }
+
+    /**
+     * Are all the changed files unchanged since {@link #prepare()}?
+     */
+    public boolean isUpToDate() {
+        for (ClassRewriter rewriter : mRewriters.values()) {
+            if (!rewriter.isUpToDate()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply all the changes; must run in a write action, after {@link #isUpToDate()}
+     *
+     * @return the generated elements, see {@link ClassRewriter#apply()}
+     */
+    @NotNull
+    public List<PsiElement> apply() {
+        List<PsiElement> generated = new ArrayList<PsiElement>();
+        for (ClassRewriter rewriter : mRewriters.values()) {
+            generated.addAll(rewriter.apply());
+        }
+        return generated;
+    }
+
+    /**
+     * The changes grouped by class, one line per change with + for added and ~ for replaced code
+     */
+    @NotNull
+    public String getText() {
+        if (mChanges.isEmpty()) {
+            return "Nothing to generate, every checked element is bound already.";
+        }
+
+        StringBuilder text = new StringBuilder();
+        String className = null;
+        String methodName = null;
+        for (Change change : mChanges) {
+            if (!change.className.equals(className)) {
+                if (className != null) {
+                    text.append('\n');
+                }
+                className = change.className;
+                methodName = null;
+                text.append(className).append('\n');
+            }
+            if (change.methodName != null && !change.methodName.equals(methodName)) {
+                text.append("  in ").append(change.methodName).append("():\n");
+            }
+            methodName = change.methodName;
+            String indent = methodName != null ? "    " : "  ";
+            String marker = change.kind == Kind.REPLACE ? "~ " : "+ ";
+            String prefix = change.kind == Kind.IMPORT ? "import " : change.kind == Kind.IMPLEMENTS ? "implements " : "";
+            for (String line : (prefix + change.text).split("\n")) {
+                text.append(indent).append(marker).append(line.trim()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+
+    private ClassRewriter getRewriter(PsiClass psiClass) {
+        ClassRewriter rewriter = mRewriters.get(psiClass);
+        if (rewriter == null) {
+            rewriter = new ClassRewriter(psiClass);
+            mRewriters.put(psiClass, rewriter);
+        }
+        return rewriter;
+    }
+
+    /**
+     * @param place the changed body or statement, null for the changes of the class itself
+     */
+    private void record(Kind kind, PsiClass psiClass, @Nullable PsiElement place, String text) {
+        PsiMethod method = place != null ? PsiTreeUtil.getParentOfType(place, PsiMethod.class) : null;
+        mChanges.add(new Change(kind, String.valueOf(psiClass.getName()), method != null ? method.getName() : null, text));
+    }
+}
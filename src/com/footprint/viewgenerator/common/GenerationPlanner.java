@@ -0,0 +1,473 @@
+package com.footprint.viewgenerator.common;
+
+import com.footprint.viewgenerator.component.ViewTypeResolver;
+import com.footprint.viewgenerator.model.ClassBindingSnapshot;
+import com.footprint.viewgenerator.model.Element;
+import com.footprint.viewgenerator.model.ElementTable;
+import com.footprint.viewgenerator.model.VGContext;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plans a generation: compares the checked elements with the bindings the class has, see
+ * {@link VGContext#refresh(ElementTable)}, and adds only what is missing to a {@link GenerationPlan}. Only reads the
+ * PSI; needs a read action in smart mode.
+ * <p>
+ * Everything a plan learns while planning, the bindings of the class and the imports it adds, stays in the planner,
+ * so planners of the same context, e.g. of the preview and of the writer, can run at the same time.
+ */
+public class GenerationPlanner {
+    protected final VGContext mContext;
+    protected final ElementTable mTable;
+    // the checked elements
+    protected List<Element> mElements;
+    protected GenerationPlan mPlan;
+    // the bindings the class had when planning started
+    protected ClassBindingSnapshot mSnapshot;
+    // imports added by this plan
+    private final Set<String> mAddedImports = new HashSet<String>();
+
+    public GenerationPlanner(@NotNull VGContext context, @NotNull ElementTable elements) {
+        mContext = context;
+        mTable = elements;
+    }
+
+    /**
+     * Plan the code for the class of the context, whose bindings are read again first
+     */
+    @NotNull
+    public GenerationPlan plan() {
+        mPlan = new GenerationPlan();
+        // the class may have been edited while the dialog was open
+        mSnapshot = mContext.refresh(mTable);
+        if (mSnapshot == null) {
+            mPlan.addProblem("The class was removed");
+            return mPlan;
+        }
+        mAddedImports.clear();
+        mElements = mTable.selected();
+        if (mTable.getInjectCount() == 0 && mTable.getClickCount() == 0 && !needsInitView()) {
+            return mPlan; // everything is bound already
+        }
+
+        resolveFieldTypes();
+        if (mContext.ifCreateViewHolder()) {
+            generateAdapter();
+        } else {
+            if (mTable.getInjectCount() > 0) {
+                generateFields();
+            }
+
+            if (mTable.getClickCount() > 0) {
+                generateClick(getPsiClass());
+            }
+
+            generateInitMethods(getPsiClass());
+        }
+        return mPlan;
+    }
+
+    private PsiClass getPsiClass() {
+        return mContext.getmClass();
+    }
+
+    /**
+     * Does a checked element still miss its findViewById or its click listener?
+     */
+    private boolean needsInitView() {
+        for (Element element : mElements) {
+            if (!element.isInit() || element.isClick() && !mSnapshot.getClickViewNames().contains(element.fieldName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void generateInitMethods(PsiClass parentClass) {
+        if (!Utils.ifClassContainsMethod(parentClass, "initView")) {//不存在该方法
+            // 添加initView()方法
+            StringBuilder method = new StringBuilder();
+            if (mContext.isActivity()) {
+                method.append("private void initView() {\n");
+            } else {
+                method.append("private void initView(View rootView) {\n");
+            }
+            for (Element element : mElements) {
+                method.append(generateFindViewByIdText(element)).append("\n");
+                if (element.isClick() && !mContext.ifCreateViewHolder()) {//添加监听
+                    method.append(element.fieldName + ".setOnClickListener(" + getPsiClass().getName() + ".this);");
+                }
+            }
+            method.append("}");
+            mPlan.addMethod(parentClass, method.toString());
+
+            addInitViewMethodInvoked(parentClass);
+        } else {//已经有该方法，只需要在init后面插入即可
+            PsiCodeBlock initViewBody = findMethod(parentClass, "initView").getBody();
+            if (initViewBody == null) {
+                return;
+            }
+            for (Element element : mElements) {
+                if (element.isInit()) {//已经初始化了
+                    if (element.isClick() && !mSnapshot.getClickViewNames().contains(element.fieldName)) {
+                        //重新添加的Click事件，遍历Body
+                        PsiStatement assignment = BindingAnalyzer.findAssignment(initViewBody, element.fieldName);
+                        if (assignment != null) {
+                            mPlan.insertAfter(parentClass, initViewBody, assignment, element.fieldName + ".setOnClickListener(" + getPsiClass().getName() + ".this);");
+                        }
+                    }
+                } else {
+                    mPlan.insertBefore(parentClass, initViewBody, null, generateFindViewByIdText(element));
+                    if (element.isClick()) {
+                        mPlan.insertBefore(parentClass, initViewBody, null, element.fieldName + ".setOnClickListener(" + getPsiClass().getName() + ".this);");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Dispatch the clicks of the new click elements in onClick. An existing dispatch only gets the missing IDs: new
+     * cases at the end of a switch, in its label or rule form, or new else-if branches after an if chain.
+     */
+    protected void generateClick(PsiClass psiClass) {
+        addViewClickListenerInterface(psiClass);
+
+        List<String> ids = new ArrayList<String>();
+        for (Element element : mTable.view(new int[]{ElementTable.NEED_DEAL, ElementTable.CLICK},
+                new int[]{ElementTable.CLICK_HANDLED})) {
+            ids.add(element.getFullID());
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        //没有onClick方法
+        PsiMethod[] onClicks = psiClass.findMethodsByName("onClick", false);
+        if (onClicks.length == 0 || onClicks[0].getBody() == null) {
+            String method = "@Override \npublic void onClick(android.view.View view) {\n"
+                    + "switch (view.getId()) {\n" + getCases(ids, false) + "}}";
+            mPlan.addMethod(psiClass, method);
+            return;
+        }
+
+        PsiMethod onClick = onClicks[0];
+        PsiCodeBlock body = onClick.getBody();
+        PsiParameter[] parameters = onClick.getParameterList().getParameters();
+        String view = parameters.length > 0 ? parameters[0].getName() : "view";
+
+        PsiSwitchStatement switchStatement = BindingAnalyzer.findClickSwitch(body);
+        if (switchStatement != null && switchStatement.getBody() != null) {
+            mPlan.addCases(psiClass, switchStatement, getCases(ids, BindingAnalyzer.isRuleSwitch(switchStatement)));
+            return;
+        }
+
+        PsiIfStatement ifStatement = BindingAnalyzer.findClickIf(body);
+        if (ifStatement != null) {
+            StringBuilder branches = new StringBuilder();
+            for (String id : ids) {
+                if (branches.length() > 0) {
+                    branches.append(" else ");
+                }
+                branches.append("if (").append(view).append(".getId() == ").append(id).append(") {\n\n}");
+            }
+            PsiIfStatement lastIf = BindingAnalyzer.getLastIf(ifStatement);
+            if (lastIf.getElseBranch() == null) {
+                mPlan.addElse(psiClass, lastIf, branches.toString());
+            } else {
+                // the final else stays last
+                mPlan.insertElseIf(psiClass, lastIf, branches.toString());
+            }
+            return;
+        }
+
+        //有onClick方法，但是没有分发语句
+        mPlan.insertAfter(psiClass, body, null, "switch (" + view + ".getId()) {\n" + getCases(ids, false) + "}");
+    }
+
+    private static String getCases(List<String> ids, boolean rules) {
+        StringBuilder cases = new StringBuilder();
+        for (String id : ids) {
+            if (rules) {
+                cases.append("case ").append(id).append(" -> {\n}\n");
+            } else {
+                cases.append("case ").append(id).append(":\n\nbreak;\n");
+            }
+        }
+        return cases.toString();
+    }
+
+    /**
+     * Create ViewHolder for adapters with injections
+     */
+    protected void generateAdapter() {
+        PsiClass psiClassViewHolder = null;
+        PsiMethod createViewHolder = findMethod(getPsiClass(), "createViewHolder");
+        if (createViewHolder != null && createViewHolder.getBody() != null) {
+            for (PsiStatement statement : createViewHolder.getBody().getStatements()) {
+                if (statement instanceof PsiReturnStatement) {
+                    PsiExpression value = ((PsiReturnStatement) statement).getReturnValue();
+                    psiClassViewHolder = value != null ? getClass(value.getType()) : null;
+                    break;
+                }
+            }
+        }
+
+        if (psiClassViewHolder == null) {
+            mPlan.addProblem("Can't find the ViewHolder returned by createViewHolder()");
+            return;
+        }
+
+        if (mTable.getInjectCount() > 0) {
+            generateFieldsAdapter(psiClassViewHolder);
+        }
+
+        if (mTable.getClickCount() > 0) {
+            generateClick(psiClassViewHolder);
+        }
+
+        generateInitMethods(psiClassViewHolder);
+
+        //open file ViewHolder
+        mPlan.setFileToOpen(psiClassViewHolder.getContainingFile().getVirtualFile());
+
+    }
+
+    //TODO SONVO
+    private PsiMethod getMethodConstructor(PsiClass psiClassViewHolder) {
+        for (PsiMethod psiMethod : psiClassViewHolder.getMethods()) {
+            if (psiMethod.isConstructor()) {
+                return psiMethod;
+            }
+        }
+        return null;
+    }
+
+    protected void generateFieldsAdapter(PsiClass psiClassViewHolder) {
+        // add injections into main class
+        StringBuilder injection = new StringBuilder();
+
+        for (Element element : mElements) {
+            if (element.isDeclared()) {//没有勾选，或者同样名字的变量已经声明过了
+                continue;
+            }
+
+            injection.delete(0, injection.length());
+            injection.append("private ");
+            injection.append(getFieldTypeName(element));
+            injection.append(" ");
+            injection.append(element.fieldName);
+            injection.append(";");
+
+            mPlan.addField(psiClassViewHolder, injection.toString());
+        }
+    }
+
+    public static PsiClass getClass(PsiElement psiElement) {
+        if (psiElement instanceof PsiVariable) {
+            PsiVariable variable = (PsiVariable) psiElement;
+            return getClass(variable.getType());
+        } else if (psiElement instanceof PsiMethod) {
+            return ((PsiMethod) psiElement).getContainingClass();
+        }
+
+        return null;
+    }
+
+    public static PsiClass getClass(PsiType psiType) {
+        if (psiType instanceof PsiClassType) {
+            return ((PsiClassType) psiType).resolve();
+        }
+        return null;
+    }
+
+    //添加接口实现
+    private void addViewClickListenerInterface(PsiClass psiClass) {
+        if (!mSnapshot.isClickClass()) {
+            PsiClass clickClass = getPsiClassByName(Definitions.ViewClickListener);
+            if (clickClass != null) {
+                mPlan.addImplements(psiClass, clickClass);
+            } else {
+                mPlan.addProblem("Can't find View.OnClickListener!");
+            }
+        }
+    }
+
+    private PsiClass getPsiClassByName(String cls) {
+        GlobalSearchScope searchScope = GlobalSearchScope.allScope(mContext.getProject());
+        JavaPsiFacade javaPsiFacade = JavaPsiFacade.getInstance(mContext.getProject());
+        return javaPsiFacade.findClass(cls, searchScope);
+    }
+
+    /**
+     * Create fields for injections inside main class
+     */
+    protected void generateFields() {
+        // add injections into main class
+        StringBuilder injection = new StringBuilder();
+
+        //TODO SONVO Begin
+        if (getPsiClass().findMethodsByName("initLayout", false).length == 0
+                && !mContext.isActivity()
+                && !mSnapshot.getFieldNames().contains("rootView")) {
+            injection.delete(0, injection.length());
+            injection.append("protected View rootView;");
+            mPlan.addField(getPsiClass(), injection.toString());
+        }
+        //TODO SONVO End
+
+        for (Element element : mElements) {
+            if (element.isDeclared()) {//没有勾选，或者同样名字的变量已经声明过了
+                continue;
+            }
+
+            injection.delete(0, injection.length());
+            injection.append("private ");
+            injection.append(getFieldTypeName(element));
+            injection.append(" ");
+            injection.append(element.fieldName);
+            injection.append(";");
+
+            mPlan.addField(getPsiClass(), injection.toString());
+        }
+    }
+
+    /**
+     * Resolve the types of all elements and plan their imports, before any code is generated
+     */
+    protected void resolveFieldTypes() {
+        ViewTypeResolver resolver = ViewTypeResolver.getInstance(mContext.getProject());
+        for (Element element : mElements) {
+            ViewTypeResolver.ViewType type = resolver.resolve(element.nameFull != null && element.nameFull.length() > 0
+                    ? element.nameFull : element.name);
+            if (type.psiClass != null && !mSnapshot.isImported(type.qualifiedName)
+                    && mAddedImports.add(type.qualifiedName)) {
+                mPlan.addImport(getPsiClass(), type.qualifiedName);
+            }
+            element.typeName = type.getShortName();
+        }
+    }
+
+    protected String getFieldTypeName(Element element) {
+        return element.typeName;
+    }
+
+    StringBuilder stringBuilder = new StringBuilder();
+
+    protected String generateFindViewByIdText(Element element) {
+        stringBuilder.delete(0, stringBuilder.length());
+        stringBuilder.append(element.fieldName)
+                .append("=(")
+                .append(getFieldTypeName(element));
+
+        if (mContext.isActivity()) {
+            stringBuilder.append(")findViewById(");
+        } else {
+            stringBuilder.append(")rootView.findViewById(");
+        }
+
+        stringBuilder.append(element.getFullID())
+                .append(");");
+
+        return stringBuilder.toString();
+    }
+
+    //添加InitView方法的调用
+    private void addInitViewMethodInvoked(PsiClass psiClass) {
+        //Activity处理
+        if (mContext.isActivity()) {
+            PsiMethod onCreate = findMethod(psiClass, "onCreate");
+            if (onCreate == null || onCreate.getBody() == null) {
+                mPlan.addProblem("Can't find onCreate() to call initView() from");
+            } else if (!containsInitViewMethodInvoked(onCreate)) {
+                for (PsiStatement statement : onCreate.getBody().getStatements()) {
+                    if (Utils.isLayoutStatement(statement)) {//
+                        mPlan.replace(psiClass, onCreate.getBody(), statement, "super.setContentView(" + BindingAnalyzer.findLayoutReference(statement) + ");");
+                        mPlan.insertBefore(psiClass, onCreate.getBody(), null, Definitions.Activity_InitViewMethodInvoked);
+                    }
+                }
+            }
+        } else if (mContext.isFragment()) {
+            //TODO SONVO Begin
+            PsiMethod onCreateView = findMethod(psiClass, "onCreateView");
+            PsiMethod initLayout = findMethod(psiClass, "initLayout");
+            if (onCreateView != null) {
+                if (onCreateView.getBody() != null && !containsInitViewMethodInvoked(onCreateView)) {
+                    boolean isReturnMode = false;
+                    for (PsiStatement statement : onCreateView.getBody().getStatements()) {
+                        //解析 return R.layout.activity.main
+                        if (statement instanceof PsiReturnStatement) {
+                            String layout = BindingAnalyzer.findLayoutReference(((PsiReturnStatement) statement).getReturnValue());
+                            if (layout != null) {
+                                mPlan.insertBefore(psiClass, onCreateView.getBody(), statement, "rootView = inflater.inflate(" + layout + ", null);");
+                                mPlan.insertBefore(psiClass, onCreateView.getBody(), statement, Definitions.Other_InitViewMethodInvoked);
+                                mPlan.replace(psiClass, onCreateView.getBody(), statement, "return rootView;");
+                                isReturnMode = true;
+                            }
+                            break;
+                        }
+                    }
+
+                    if (!isReturnMode) {
+                        for (PsiStatement statement : onCreateView.getBody().getStatements()) {
+                            /*
+                             * 解析
+                             *
+                             * R.layout.activity.main
+                             * return null
+                             * */
+                            if (Utils.isLayoutStatement(statement)) {
+                                mPlan.replace(psiClass, onCreateView.getBody(), statement, "rootView = inflater.inflate("
+                                        + BindingAnalyzer.findLayoutReference(statement) + ", null);");
+                            }
+
+                            if (statement instanceof PsiReturnStatement) {
+                                //设置语句
+                                mPlan.insertBefore(psiClass, onCreateView.getBody(), statement, "initView(rootView);");
+                                mPlan.replace(psiClass, onCreateView.getBody(), statement, "return rootView;");
+                            }
+                        }
+                    }
+                }
+            } else if (initLayout != null) {
+                if (!containsInitViewMethodInvoked(initLayout)) {
+                    if (initLayout.getBody() != null) {
+                        mPlan.insertBefore(psiClass, initLayout.getBody(), null, "initView(root);");
+                    }
+                }
+            }
+
+        }
+        if (mContext.ifCreateViewHolder()) {
+            PsiMethod methodConstructor = getMethodConstructor(psiClass);
+            if (methodConstructor == null) return;
+
+            if (!containsInitViewMethodInvoked(methodConstructor)) {
+                if (methodConstructor.getBody() != null) {
+                    mPlan.insertBefore(psiClass, methodConstructor.getBody(), null, "initView(view);");
+                }
+            }
+        }
+        //TODO SONVO End
+    }
+
+    /**
+     * The first method of the class with the name, inherited ones excluded
+     */
+    @Nullable
+    private static PsiMethod findMethod(PsiClass psiClass, String name) {
+        PsiMethod[] methods = psiClass.findMethodsByName(name, false);
+        return methods.length > 0 ? methods[0] : null;
+    }
+
+    private boolean containsInitViewMethodInvoked(PsiMethod method) {
+        return BindingAnalyzer.callsMethod(method.getBody(), "initView");
+    }
+}
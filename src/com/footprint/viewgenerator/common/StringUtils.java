@@ -19,11 +19,6 @@ package com.footprint.viewgenerator.common;
 import org.apache.http.util.TextUtils;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 
 /**
  * Created by Khande on 17/8/5.
@@ -65,28 +60,31 @@ public final class StringUtils {
         if (TextUtils.isBlank(underscoreText)) {
             return "";
         } else {
-            StringBuilder camelStrBuilder = new StringBuilder();
-            String[] strArr = underscoreText.split("_");
-            for (String str : strArr) {
-                camelStrBuilder.append(capitalize(str));
-            }
-            return camelStrBuilder.toString();
+            return TextScanner.appendSnakeAsCamel(underscoreText, true,
+                    new StringBuilder(underscoreText.length())).toString();
         }
     }
 
     /**
-     * 提取所有圆括号中的字符串, 如果某个圆括号中无任何字符串（包括空白），则不提取
-     * @param targetText 目标提取字符串
-     * @return  各个圆括号中的字符串组成的列表
+     * 将驼峰形式的字符串转换成下划线形式的字符串, 如 AaBbCc ---> aa_bb_cc
+     *
+     * @param camelText 原始驼峰字符串
+     * @return 转换后的下划线字符串
      */
     @NotNull
-    public static List<String> extractStringInParentheses(@NotNull String targetText) {
-        List<String> extractedList = new ArrayList<>();
-        Pattern pattern = Pattern.compile("(?<=\\()(.+?)(?=\\))");
-        Matcher matcher = pattern.matcher(targetText);
-        while (matcher.find()) {
-            extractedList.add(matcher.group());
+    public static String transformCamel2Underscore(@NotNull String camelText) {
+        StringBuilder underscoreStrBuilder = new StringBuilder(camelText.length() + 4);
+        for (int i = 0; i < camelText.length(); i++) {
+            char c = camelText.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    underscoreStrBuilder.append('_');
+                }
+                underscoreStrBuilder.append(Character.toLowerCase(c));
+            } else {
+                underscoreStrBuilder.append(c);
+            }
         }
-        return extractedList;
+        return underscoreStrBuilder.toString();
     }
 }
@@ -0,0 +1,68 @@
+package com.footprint.viewgenerator.common;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Char level helpers working directly on {@link CharSequence}s, e.g. document text or PSI text, without regexes,
+ * {@code split} or intermediate strings. Only the results are allocated.
+ */
+public final class TextScanner {
+
+    private TextScanner() {
+
+    }
+
+    /**
+     * Name after the last '/', e.g. main of "@layout/main"
+     *
+     * @param text
+     * @return null if there is no '/' or nothing after it
+     */
+    @Nullable
+    public static String afterLastSlash(@NotNull CharSequence text) {
+        for (int i = text.length() - 1; i >= 0; i--) {
+            if (text.charAt(i) == '/') {
+                return i + 1 < text.length() ? text.subSequence(i + 1, text.length()).toString() : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Append snake_case text as camelCase, e.g. user_name -> userName, or UserName with capitalizeFirst.
+     * Only the part after the last '.' of every word is used, and empty words are skipped.
+     *
+     * @param text
+     * @param capitalizeFirst capitalize the first word too
+     * @param out
+     * @return out
+     */
+    @NotNull
+    public static StringBuilder appendSnakeAsCamel(@NotNull CharSequence text, boolean capitalizeFirst,
+                                                   @NotNull StringBuilder out) {
+        int wordIndex = 0;
+        for (int i = 0; i <= text.length(); ) {
+            int end = i;
+            while (end < text.length() && text.charAt(end) != '_') {
+                end++;
+            }
+            int start = i;
+            for (int j = end - 1; j >= i; j--) {
+                if (text.charAt(j) == '.') {
+                    start = j + 1;
+                    break;
+                }
+            }
+
+            if (end > start) {
+                char first = text.charAt(start);
+                out.append(wordIndex > 0 || capitalizeFirst ? Character.toUpperCase(first) : first);
+                out.append(text, start + 1, end);
+                wordIndex++;
+            }
+            i = end + 1;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,172 @@
+package com.footprint.viewgenerator.component;
+
+import com.footprint.viewgenerator.Settings.Settings;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.RecursionManager;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Project level cache telling which Android components a class is.
+ * <p>
+ * Every class memoizes the qualified names of all its supertypes, built from the memoized names of its direct
+ * supers, so a hierarchy is walked once and shared by all of its subclasses. A class is of a kind when one of
+ * the kind's base classes is among them; the adapter, ViewHolder, View and Dialog base classes can be configured
+ * in {@link Settings}. Everything is cached until the Java structure, the classpath or the settings change.
+ */
+public class ComponentClassifier {
+    private static final SimpleModificationTracker sSettingsTracker = new SimpleModificationTracker();
+
+    private final Project mProject;
+
+    public static ComponentClassifier getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, ComponentClassifier.class);
+    }
+
+    public ComponentClassifier(@NotNull Project project) {
+        mProject = project;
+    }
+
+    /**
+     * Kinds of the class, empty when it is none of them
+     */
+    @NotNull
+    public Set<ComponentKind> getKinds(@NotNull final PsiClass psiClass) {
+        return CachedValuesManager.getCachedValue(psiClass, new CachedValueProvider<Set<ComponentKind>>() {
+            @Override
+            public Result<Set<ComponentKind>> compute() {
+                return Result.create(classify(psiClass), PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT,
+                        ProjectRootManager.getInstance(mProject), sSettingsTracker);
+            }
+        });
+    }
+
+    public boolean is(@NotNull PsiClass psiClass, @NotNull ComponentKind kind) {
+        return getKinds(psiClass).contains(kind);
+    }
+
+    public boolean isActivity(@NotNull PsiClass psiClass) {
+        return is(psiClass, ComponentKind.ACTIVITY);
+    }
+
+    /**
+     * Is the class a framework or a support library Fragment?
+     */
+    public boolean isFragment(@NotNull PsiClass psiClass) {
+        Set<ComponentKind> kinds = getKinds(psiClass);
+        return kinds.contains(ComponentKind.FRAGMENT) || kinds.contains(ComponentKind.SUPPORT_FRAGMENT);
+    }
+
+    public boolean isAdapter(@NotNull PsiClass psiClass) {
+        return is(psiClass, ComponentKind.ADAPTER);
+    }
+
+    /**
+     * Qualified names of every class and interface the class extends or implements, directly or not
+     */
+    @NotNull
+    public Set<String> getSupertypeNames(@NotNull final PsiClass psiClass) {
+        return CachedValuesManager.getCachedValue(psiClass, new CachedValueProvider<Set<String>>() {
+            @Override
+            public Result<Set<String>> compute() {
+                return Result.create(collectSupertypeNames(psiClass),
+                        PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT, ProjectRootManager.getInstance(mProject));
+            }
+        });
+    }
+
+    /**
+     * Base classes of the kind, from the settings for the configurable kinds
+     */
+    @NotNull
+    public static List<String> getBaseClasses(@NotNull ComponentKind kind) {
+        if (!kind.isConfigurable()) {
+            return kind.getDefaultBaseClasses();
+        }
+        String value = PropertiesComponent.getInstance().getValue(getSettingKey(kind));
+        if (value == null) {
+            return kind.getDefaultBaseClasses();
+        }
+        return StringUtil.split(value, ",");
+    }
+
+    /**
+     * Store the base classes of a configurable kind, reclassifying every class
+     */
+    public static void setBaseClasses(@NotNull ComponentKind kind, @NotNull String value) {
+        PropertiesComponent.getInstance().setValue(getSettingKey(kind), StringUtil.join(parseBaseClasses(value), ","));
+        sSettingsTracker.incModificationCount();
+    }
+
+    /**
+     * The class names of a comma separated list, as entered in the settings
+     */
+    @NotNull
+    public static List<String> parseBaseClasses(@NotNull String value) {
+        List<String> classes = new ArrayList<String>();
+        for (String className : StringUtil.split(value, ",")) {
+            if (!StringUtil.isEmptyOrSpaces(className)) {
+                classes.add(className.trim());
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Incremented whenever the configured base classes change
+     */
+    @NotNull
+    public static ModificationTracker getSettingsTracker() {
+        return sSettingsTracker;
+    }
+
+    private static String getSettingKey(ComponentKind kind) {
+        return Settings.BASE_CLASSES_PREFIX + kind.name().toLowerCase(Locale.US);
+    }
+
+    private Set<ComponentKind> classify(PsiClass psiClass) {
+        Set<String> supertypes = getSupertypeNames(psiClass);
+        Set<ComponentKind> kinds = EnumSet.noneOf(ComponentKind.class);
+        for (ComponentKind kind : ComponentKind.values()) {
+            for (String baseClass : getBaseClasses(kind)) {
+                if (supertypes.contains(baseClass)) {
+                    kinds.add(kind);
+                    break;
+                }
+            }
+        }
+        return Collections.unmodifiableSet(kinds);
+    }
+
+    private Set<String> collectSupertypeNames(PsiClass psiClass) {
+        Set<String> names = new HashSet<String>();
+        for (final PsiClass superClass : psiClass.getSupers()) {
+            if (superClass.getQualifiedName() != null) {
+                names.add(superClass.getQualifiedName());
+            }
+            // a cyclic hierarchy in broken code stops here instead of recursing forever
+            Set<String> superNames = RecursionManager.doPreventingRecursion(superClass, false, new Computable<Set<String>>() {
+                @Override
+                public Set<String> compute() {
+                    return getSupertypeNames(superClass);
+                }
+            });
+            if (superNames != null) {
+                names.addAll(superNames);
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+}
@@ -0,0 +1,42 @@
+package com.footprint.viewgenerator.component;
+
+import com.footprint.viewgenerator.common.Definitions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Android components a class can be, decided by {@link ComponentClassifier}
+ */
+public enum ComponentKind {
+    ACTIVITY(false, "android.app.Activity"),
+    FRAGMENT(false, "android.app.Fragment"),
+    SUPPORT_FRAGMENT(false, "android.support.v4.app.Fragment"),
+    ADAPTER(true, Definitions.adapters.toArray(new String[Definitions.adapters.size()])),
+    VIEW_HOLDER(true, "android.support.v7.widget.RecyclerView.ViewHolder"),
+    VIEW(true, "android.view.View"),
+    DIALOG(true, "android.app.Dialog");
+
+    private final boolean mConfigurable;
+    private final List<String> mDefaultBaseClasses;
+
+    ComponentKind(boolean configurable, String... defaultBaseClasses) {
+        mConfigurable = configurable;
+        mDefaultBaseClasses = Collections.unmodifiableList(Arrays.asList(defaultBaseClasses));
+    }
+
+    /**
+     * Can the base classes be changed in the settings?
+     */
+    public boolean isConfigurable() {
+        return mConfigurable;
+    }
+
+    /**
+     * Qualified names of the classes whose inheritors are of this kind, unless configured otherwise
+     */
+    public List<String> getDefaultBaseClasses() {
+        return mDefaultBaseClasses;
+    }
+}
@@ -0,0 +1,117 @@
+package com.footprint.viewgenerator.component;
+
+import com.footprint.viewgenerator.common.Definitions;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Project level cache resolving layout tag names to view classes.
+ * <p>
+ * Qualified tags are looked up as they are. Simple tags are matched against the classes of that short name,
+ * in the packages LayoutInflater tries, so a single {@link PsiShortNamesCache} query replaces a global search per
+ * candidate. Misses are cached as well, and everything is dropped when the classpath or the Java structure
+ * changes.
+ */
+public class ViewTypeResolver {
+    // the packages PhoneLayoutInflater and LayoutInflater try for a tag without package, in order
+    private static final String[] DEFAULT_PACKAGES = {"android.widget.", "android.webkit.", "android.app.", "android.view."};
+    private static final String FALLBACK_PACKAGE = "android.widget.";
+
+    private final Project mProject;
+    private final CachedValue<ConcurrentMap<String, ViewType>> mTypes;
+
+    public static ViewTypeResolver getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, ViewTypeResolver.class);
+    }
+
+    public ViewTypeResolver(@NotNull final Project project) {
+        mProject = project;
+        mTypes = CachedValuesManager.getManager(project).createCachedValue(
+                new CachedValueProvider<ConcurrentMap<String, ViewType>>() {
+                    @Override
+                    public Result<ConcurrentMap<String, ViewType>> compute() {
+                        return Result.create((ConcurrentMap<String, ViewType>) new ConcurrentHashMap<String, ViewType>(),
+                                ProjectRootManager.getInstance(project), PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT);
+                    }
+                }, false);
+    }
+
+    /**
+     * Resolve the view class of a layout tag
+     *
+     * @param tagName tag name as written in the layout, with or without package
+     * @return never null; its class is null when it can't be found
+     */
+    @NotNull
+    public ViewType resolve(@NotNull String tagName) {
+        ConcurrentMap<String, ViewType> types = mTypes.getValue();
+        ViewType type = types.get(tagName);
+        if (type == null) {
+            type = doResolve(tagName);
+            types.put(tagName, type);
+        }
+        return type;
+    }
+
+    private ViewType doResolve(String tagName) {
+        GlobalSearchScope scope = GlobalSearchScope.allScope(mProject);
+        if (tagName.indexOf('.') >= 0) { // custom package+class
+            return new ViewType(tagName, JavaPsiFacade.getInstance(mProject).findClass(tagName, scope));
+        }
+
+        PsiClass[] candidates = PsiShortNamesCache.getInstance(mProject).getClassesByName(tagName, scope);
+        String listed = Definitions.paths.get(tagName);
+        if (listed != null) { // listed class
+            return new ViewType(listed, find(candidates, listed));
+        }
+        for (String prefix : DEFAULT_PACKAGES) {
+            PsiClass psiClass = find(candidates, prefix + tagName);
+            if (psiClass != null) {
+                return new ViewType(psiClass.getQualifiedName(), psiClass);
+            }
+        }
+        return new ViewType(FALLBACK_PACKAGE + tagName, null); // no SDK attached
+    }
+
+    @Nullable
+    private static PsiClass find(PsiClass[] candidates, String qualifiedName) {
+        for (PsiClass candidate : candidates) {
+            if (qualifiedName.equals(candidate.getQualifiedName())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Qualified name of a view class, with the class itself when it could be resolved
+     */
+    public static final class ViewType {
+        public final String qualifiedName;
+        @Nullable
+        public final PsiClass psiClass;
+
+        ViewType(@NotNull String qualifiedName, @Nullable PsiClass psiClass) {
+            this.qualifiedName = qualifiedName;
+            this.psiClass = psiClass;
+        }
+
+        public String getShortName() {
+            return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+        }
+    }
+}
@@ -44,6 +44,9 @@ public class Entry extends JPanel {
 
         mID = new JLabel(mElement.id);
         mID.setPreferredSize(new Dimension(100, 26));
+        if (mElement.variants != null) {
+            mID.setToolTipText("Only in " + String.join(", ", mElement.variants));
+        }
 
         mName = new JTextField(mElement.fieldName, 10);
         mNameDefaultColor = mName.getBackground();
@@ -61,16 +64,16 @@ public class Entry extends JPanel {
         });
 
         mCheck.setSelected(true);
-        if (element.isDeclared) {
+        if (element.isDeclared()) {
             mCheck.setEnabled(false);//默认选中且不能取消
         }
 
-        if (mContext.getClickIdsList().contains(mElement.getFullID())) {
+        if (mContext.getClickIds().contains(mElement.getFullID())) {
             mEvent.setSelected(true);
             mEvent.setEnabled(false);//默认选中且不能取消
         }
 
-        if (mContext.getFieldNameList().contains(mElement.fieldName)) {
+        if (mContext.getFieldNames().contains(mElement.fieldName)) {
             mName.setEditable(false);//已经声明则不能编辑
         }
 
@@ -91,8 +94,8 @@ public class Entry extends JPanel {
     }
 
     public Element syncElement() {
-        mElement.needDeal = mCheck.isSelected();
-        mElement.isClick = mEvent.isSelected() && mElement.needDeal;//需要处理
+        mElement.setNeedDeal(mCheck.isSelected());
+        mElement.setClick(mEvent.isSelected() && mElement.isNeedDeal());//需要处理
         mElement.fieldName = mName.getText();
 
         if (mElement.checkValidity()) {
@@ -124,7 +127,7 @@ public class Entry extends JPanel {
     }
 
     public void setSelected(boolean selected) {
-        if (!mElement.isDeclared) {
+        if (!mElement.isDeclared()) {
             this.mCheck.setSelected(selected);
         }
     }
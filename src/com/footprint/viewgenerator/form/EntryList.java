@@ -2,7 +2,9 @@ package com.footprint.viewgenerator.form;
 
 import com.footprint.viewgenerator.iface.ICancelListener;
 import com.footprint.viewgenerator.iface.IConfirmListener;
+import com.footprint.viewgenerator.iface.IPreviewListener;
 import com.footprint.viewgenerator.model.Element;
+import com.footprint.viewgenerator.model.ElementTable;
 import com.footprint.viewgenerator.model.VGContext;
 import com.intellij.ui.components.JBScrollPane;
 
@@ -12,27 +14,30 @@ import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class EntryList extends JPanel {
-    protected ArrayList<Element> mElements;
+    protected ElementTable mElements;
     protected List<Entry> mEntries = new ArrayList<Entry>();
     protected VGContext mContext;
     protected String mPrefix = null;
     protected IConfirmListener mConfirmListener;
     protected ICancelListener mCancelListener;
+    protected IPreviewListener mPreviewListener;
     protected JCheckBox mHolderCheck;
     protected JLabel mHolderLabel;
     protected JButton mConfirm;
     protected JButton mCancel;
+    protected JButton mPreview;
     protected JCheckBox mAllCheck;
     private JPanel injectionsPanel;
 
-    public EntryList(VGContext context, ArrayList<Element> elements, IConfirmListener confirmListener, ICancelListener cancelListener) {
+    public EntryList(VGContext context, ElementTable elements, IConfirmListener confirmListener, ICancelListener cancelListener,
+                     IPreviewListener previewListener) {
         mContext = context;
         mConfirmListener = confirmListener;
         mCancelListener = cancelListener;
+        mPreviewListener = previewListener;
         mElements = elements;
 
         setPreferredSize(new Dimension(640, 360));
@@ -54,10 +59,13 @@ public class EntryList extends JPanel {
         injectionsPanel.add(Box.createRigidArea(new Dimension(0, 5)));
 
 
-        Collections.sort(mElements, (e1, e2) -> Boolean.compare(e1.isDeclared(),e2.isDeclared()));
+        //未声明的在前
+        List<Element> sorted = new ArrayList<Element>(mElements.size());
+        sorted.addAll(mElements.view(new int[0], new int[]{ElementTable.DECLARED}));
+        sorted.addAll(mElements.view(new int[]{ElementTable.DECLARED}, new int[0]));
         int cnt = 0;
         mEntries.clear();
-        for (Element element : mElements) {
+        for (Element element : sorted) {
             Entry entry = new Entry(this, element, mContext);
 
             if (cnt > 0) {
@@ -120,6 +128,12 @@ public class EntryList extends JPanel {
         mCancel.setText("Cancel");
         mCancel.setVisible(true);
 
+        mPreview = new JButton();
+        mPreview.setAction(new PreviewAction());
+        mPreview.setPreferredSize(new Dimension(120, 26));
+        mPreview.setText("Preview");
+        mPreview.setVisible(mPreviewListener != null);
+
         mConfirm = new JButton();
         mConfirm.setAction(new ConfirmAction());
         mConfirm.setPreferredSize(new Dimension(120, 26));
@@ -129,6 +143,7 @@ public class EntryList extends JPanel {
         JPanel buttonPanel = new JPanel();
         buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.LINE_AXIS));
         buttonPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        buttonPanel.add(mPreview);
         buttonPanel.add(Box.createHorizontalGlue());
         buttonPanel.add(mCancel);
         buttonPanel.add(Box.createRigidArea(new Dimension(10, 0)));
@@ -198,6 +213,20 @@ public class EntryList extends JPanel {
         }
     }
 
+    protected class PreviewAction extends AbstractAction {
+        public void actionPerformed(ActionEvent event) {
+            boolean valid = checkValidity();
+
+            for (Entry entry : mEntries) {
+                entry.syncElement();
+            }
+
+            if (valid && mPreviewListener != null) {
+                mPreviewListener.onPreview(mContext, mElements);
+            }
+        }
+    }
+
     protected class CancelAction extends AbstractAction {
         public void actionPerformed(ActionEvent event) {
             if (mCancelListener != null) {
@@ -0,0 +1,20 @@
+package com.footprint.viewgenerator.iface;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Turns the ID of a view into the name of its field. Implementations are immutable, so one instance is captured
+ * per generation and shared by all of its elements.
+ */
+public interface FieldNamingStrategy {
+
+    /**
+     * @param id             ID without the @+id/ part, e.g. user_name
+     * @param viewName       simple class name of the view, e.g. TextView
+     * @param includedLayout layout the ID comes from when it is declared in an included layout, null otherwise
+     * @return name of the field
+     */
+    @NotNull
+    String getFieldName(@NotNull String id, @NotNull String viewName, @Nullable String includedLayout);
+}
@@ -0,0 +1,8 @@
+package com.footprint.viewgenerator.iface;
+
+import com.footprint.viewgenerator.model.ElementTable;
+import com.footprint.viewgenerator.model.VGContext;
+
+public interface IPreviewListener {
+    public void onPreview(VGContext context, ElementTable elements);
+}
@@ -0,0 +1,45 @@
+package com.footprint.viewgenerator.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One interesting tag of a layout file: a view carrying android:id or an include reference.
+ */
+public class LayoutEntry {
+    public final String name; // tag name, or value of the class attribute
+    public final String id; // raw android:id value, e.g. @+id/title
+    public final String include; // layout name of <include layout="@layout/..."/>
+
+    public LayoutEntry(@NotNull String name, @Nullable String id, @Nullable String include) {
+        this.name = name;
+        this.id = id;
+        this.include = include;
+    }
+
+    public boolean isInclude() {
+        return include != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LayoutEntry)) {
+            return false;
+        }
+        LayoutEntry that = (LayoutEntry) o;
+        return name.equals(that.name)
+                && (id == null ? that.id == null : id.equals(that.id))
+                && (include == null ? that.include == null : include.equals(that.include));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name.hashCode();
+        result = 31 * result + (id != null ? id.hashCode() : 0);
+        result = 31 * result + (include != null ? include.hashCode() : 0);
+        return result;
+    }
+}
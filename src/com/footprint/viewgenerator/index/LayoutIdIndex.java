@@ -0,0 +1,117 @@
+package com.footprint.viewgenerator.index;
+
+import com.footprint.viewgenerator.common.Utils;
+import com.footprint.viewgenerator.layout.LayoutScanner;
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layout name -> (tag/class, android:id, include) tuples of every layout file, so the IDs of a layout
+ * can be collected without building its XML PSI. Files are read by {@link LayoutScanner}.
+ */
+public class LayoutIdIndex extends FileBasedIndexExtension<String, List<LayoutEntry>> {
+    public static final ID<String, List<LayoutEntry>> NAME = ID.create("com.footprint.viewgenerator.LayoutIdIndex");
+    private static final int VERSION = 2;
+
+    @NotNull
+    @Override
+    public ID<String, List<LayoutEntry>> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, List<LayoutEntry>, FileContent> getIndexer() {
+        return new DataIndexer<String, List<LayoutEntry>, FileContent>() {
+            @NotNull
+            @Override
+            public Map<String, List<LayoutEntry>> map(@NotNull FileContent inputData) {
+                List<LayoutEntry> entries = LayoutScanner.scan(inputData.getContent());
+                return Collections.singletonMap(inputData.getFile().getNameWithoutExtension(), entries);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<List<LayoutEntry>> getValueExternalizer() {
+        return new EntriesExternalizer();
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(XmlFileType.INSTANCE) {
+            @Override
+            public boolean acceptInput(@NotNull VirtualFile file) {
+                return Utils.isLayoutFile(file);
+            }
+        };
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    private static class EntriesExternalizer implements DataExternalizer<List<LayoutEntry>> {
+        @Override
+        public void save(@NotNull DataOutput out, List<LayoutEntry> value) throws IOException {
+            out.writeInt(value.size());
+            for (LayoutEntry entry : value) {
+                IOUtil.writeUTF(out, entry.name);
+                writeNullable(out, entry.id);
+                writeNullable(out, entry.include);
+            }
+        }
+
+        @Override
+        public List<LayoutEntry> read(@NotNull DataInput in) throws IOException {
+            int size = in.readInt();
+            List<LayoutEntry> entries = new ArrayList<LayoutEntry>(size);
+            for (int i = 0; i < size; i++) {
+                String name = IOUtil.readUTF(in);
+                String id = readNullable(in);
+                String include = readNullable(in);
+                entries.add(new LayoutEntry(name, id, include));
+            }
+            return entries;
+        }
+
+        private static void writeNullable(DataOutput out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                IOUtil.writeUTF(out, value);
+            }
+        }
+
+        private static String readNullable(DataInput in) throws IOException {
+            return in.readBoolean() ? IOUtil.readUTF(in) : null;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.footprint.viewgenerator.index;
+
+import com.footprint.viewgenerator.common.Utils;
+import com.footprint.viewgenerator.layout.LayoutReferenceResolver;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.lang.LighterAST;
+import com.intellij.lang.LighterASTNode;
+import com.intellij.lang.LighterASTTokenNode;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.source.JavaLightTreeUtil;
+import com.intellij.psi.impl.source.tree.ElementType;
+import com.intellij.psi.impl.source.tree.JavaElementType;
+import com.intellij.psi.impl.source.tree.LightTreeUtil;
+import com.intellij.psi.impl.source.tree.RecursiveLighterASTNodeWalkingVisitor;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import com.intellij.util.text.CharArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Layout name -> qualified names of the classes inflating it, as recognized by {@link LayoutReferenceResolver}.
+ * This is the reverse of {@link LayoutReferenceResolver#getInflatedLayouts}.
+ * <p>
+ * Files are indexed from their lighter AST, which needs no PSI, and only when their text mentions R.layout or a
+ * binding inflation; the same structures as in {@link LayoutReferenceResolver} are matched on the light nodes.
+ */
+public class LayoutUsageIndex extends FileBasedIndexExtension<String, List<String>> {
+    public static final ID<String, List<String>> NAME = ID.create("com.footprint.viewgenerator.LayoutUsageIndex");
+    private static final int VERSION = 3;
+    private static final String[] MARKERS = {Utils.LAYOUT_RES_SUFFIX, "Binding.inflate", "DataBindingUtil"};
+
+    @NotNull
+    @Override
+    public ID<String, List<String>> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, List<String>, FileContent> getIndexer() {
+        return new DataIndexer<String, List<String>, FileContent>() {
+            @NotNull
+            @Override
+            public Map<String, List<String>> map(@NotNull FileContent inputData) {
+                if (!mentionsLayout(inputData.getContentAsText()) || !(inputData instanceof PsiDependentFileContent)) {
+                    return Collections.emptyMap(); // most classes never touch a layout
+                }
+                return collectUsages(((PsiDependentFileContent) inputData).getLighterAST());
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<List<String>> getValueExternalizer() {
+        return new DataExternalizer<List<String>>() {
+            @Override
+            public void save(@NotNull DataOutput out, List<String> value) throws IOException {
+                out.writeInt(value.size());
+                for (String className : value) {
+                    IOUtil.writeUTF(out, className);
+                }
+            }
+
+            @Override
+            public List<String> read(@NotNull DataInput in) throws IOException {
+                int size = in.readInt();
+                List<String> value = new ArrayList<String>(size);
+                for (int i = 0; i < size; i++) {
+                    value.add(IOUtil.readUTF(in));
+                }
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    /**
+     * Classes inflating the layout
+     *
+     * @param project
+     * @param layoutName layout name without extension
+     * @param scope
+     * @return
+     */
+    @NotNull
+    public static List<PsiClass> getInflatingClasses(@NotNull final Project project, @NotNull String layoutName,
+                                                     @NotNull GlobalSearchScope scope) {
+        final Set<PsiClass> classes = new LinkedHashSet<PsiClass>();
+        FileBasedIndex.getInstance().processValues(NAME, layoutName, null, new FileBasedIndex.ValueProcessor<List<String>>() {
+            @Override
+            public boolean process(VirtualFile file, List<String> value) {
+                GlobalSearchScope fileScope = GlobalSearchScope.fileScope(project, file);
+                for (String className : value) {
+                    PsiClass psiClass = JavaPsiFacade.getInstance(project).findClass(className, fileScope);
+                    if (psiClass != null) {
+                        classes.add(psiClass);
+                    }
+                }
+                return true;
+            }
+        }, scope);
+        return new ArrayList<PsiClass>(classes);
+    }
+
+    private static boolean mentionsLayout(CharSequence text) {
+        for (String marker : MARKERS) {
+            if (CharArrayUtil.indexOf(text, marker, 0) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, List<String>> collectUsages(final LighterAST tree) {
+        final Map<String, List<String>> usages = new HashMap<String, List<String>>();
+        final String packageName = getPackageName(tree);
+        new RecursiveLighterASTNodeWalkingVisitor(tree) {
+            @Override
+            public void visitNode(@NotNull LighterASTNode element) {
+                if (element.getTokenType() == JavaElementType.REFERENCE_EXPRESSION) {
+                    String layoutName = getInflatedLayoutName(tree, element);
+                    String className = layoutName != null ? getClassName(tree, element, packageName) : null;
+                    if (className != null) {
+                        List<String> classes = usages.get(layoutName);
+                        if (classes == null) {
+                            classes = new ArrayList<String>(1);
+                            usages.put(layoutName, classes);
+                        }
+                        if (!classes.contains(className)) {
+                            classes.add(className);
+                        }
+                    }
+                }
+                super.visitNode(element);
+            }
+        }.visitNode(tree.getRoot());
+        return usages;
+    }
+
+    /**
+     * Light version of {@link LayoutReferenceResolver#getInflatedLayoutName}, without resolving
+     */
+    @Nullable
+    private static String getInflatedLayoutName(LighterAST tree, LighterASTNode reference) {
+        LighterASTNode parent = tree.getParent(reference);
+        String name = getReferenceName(tree, reference);
+        if ("inflate".equals(name) && parent != null && parent.getTokenType() == JavaElementType.METHOD_CALL_EXPRESSION) {
+            LighterASTNode qualifier = getQualifier(tree, reference);
+            return qualifier != null ? LayoutReferenceResolver.getBindingLayoutName(getReferenceName(tree, qualifier)) : null;
+        }
+
+        // R.layout.xxx, R qualified or not
+        LighterASTNode type = getQualifier(tree, reference);
+        if (type == null || !"layout".equals(getReferenceName(tree, type))) {
+            return null;
+        }
+        LighterASTNode r = getQualifier(tree, type);
+        if (r == null || !"R".equals(getReferenceName(tree, r))) {
+            return null;
+        }
+        return isInflation(tree, reference) ? name : null;
+    }
+
+    /**
+     * Light version of the inflation check of {@link LayoutReferenceResolver}
+     */
+    private static boolean isInflation(LighterAST tree, LighterASTNode reference) {
+        LighterASTNode parent = tree.getParent(reference);
+        while (parent != null && parent.getTokenType() == JavaElementType.PARENTH_EXPRESSION) {
+            parent = tree.getParent(parent);
+        }
+        if (parent == null) {
+            return false;
+        }
+        if (parent.getTokenType() == JavaElementType.RETURN_STATEMENT) {
+            return true;
+        }
+        LighterASTNode call = tree.getParent(parent);
+        if (parent.getTokenType() == JavaElementType.EXPRESSION_LIST && call != null
+                && call.getTokenType() == JavaElementType.METHOD_CALL_EXPRESSION) {
+            LighterASTNode method = LightTreeUtil.firstChildOfType(tree, call, JavaElementType.REFERENCE_EXPRESSION);
+            if (method != null && LayoutReferenceResolver.isInflateCall(getReferenceName(tree, method))) {
+                return true;
+            }
+        }
+
+        for (LighterASTNode node = parent; node != null; node = tree.getParent(node)) {
+            if (node.getTokenType() == JavaElementType.METHOD) {
+                return LayoutReferenceResolver.isInflateMethod(JavaLightTreeUtil.getNameIdentifierText(tree, node));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Qualified name of the class around the node, anonymous classes skipped
+     *
+     * @return null in a local class
+     */
+    @Nullable
+    private static String getClassName(LighterAST tree, LighterASTNode node, String packageName) {
+        StringBuilder name = new StringBuilder();
+        for (LighterASTNode parent = tree.getParent(node); parent != null; parent = tree.getParent(parent)) {
+            if (parent.getTokenType() != JavaElementType.CLASS) {
+                continue; // anonymous classes have their own type
+            }
+            LighterASTNode declaration = tree.getParent(parent);
+            if (declaration != null && declaration.getTokenType() == JavaElementType.DECLARATION_STATEMENT) {
+                return null; // local class
+            }
+            String className = JavaLightTreeUtil.getNameIdentifierText(tree, parent);
+            if (className == null) {
+                return null;
+            }
+            name.insert(0, name.length() > 0 ? className + "." : className);
+        }
+        if (name.length() == 0) {
+            return null;
+        }
+        return packageName.isEmpty() ? name.toString() : packageName + "." + name;
+    }
+
+    private static String getPackageName(LighterAST tree) {
+        LighterASTNode statement = LightTreeUtil.firstChildOfType(tree, tree.getRoot(), JavaElementType.PACKAGE_STATEMENT);
+        LighterASTNode reference = statement != null
+                ? LightTreeUtil.firstChildOfType(tree, statement, JavaElementType.JAVA_CODE_REFERENCE) : null;
+        return reference != null ? LightTreeUtil.toFilteredString(tree, reference, ElementType.JAVA_COMMENT_OR_WHITESPACE_BIT_SET) : "";
+    }
+
+    @Nullable
+    private static String getReferenceName(LighterAST tree, LighterASTNode reference) {
+        LighterASTNode identifier = LightTreeUtil.firstChildOfType(tree, reference, JavaTokenType.IDENTIFIER);
+        return identifier instanceof LighterASTTokenNode ? ((LighterASTTokenNode) identifier).getText().toString() : null;
+    }
+
+    @Nullable
+    private static LighterASTNode getQualifier(LighterAST tree, LighterASTNode reference) {
+        List<LighterASTNode> children = tree.getChildren(reference);
+        LighterASTNode first = children.isEmpty() ? null : children.get(0);
+        return first != null && first.getTokenType() == JavaElementType.REFERENCE_EXPRESSION ? first : null;
+    }
+}
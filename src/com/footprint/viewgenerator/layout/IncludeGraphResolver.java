@@ -0,0 +1,129 @@
+package com.footprint.viewgenerator.layout;
+
+import com.footprint.viewgenerator.iface.FieldNamingStrategy;
+import com.footprint.viewgenerator.index.LayoutEntry;
+import com.footprint.viewgenerator.model.Element;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Expands a layout and its {@code <include>}s into the list of IDs to generate. Layouts are looked up by name,
+ * so every qualifier variant of a layout and of its includes contributes (see {@link LayoutVariants}).
+ * <p>
+ * One resolver is one generation session: every layout is expanded at most once, however many times it is
+ * included, and include cycles are cut instead of recursing forever. Each ID is kept once, with this precedence:
+ * an ID declared directly in a layout wins over the same ID coming from one of its includes, and among includes
+ * the first one in document order wins. {@link Element#layout} records which layout contributed the ID.
+ */
+public class IncludeGraphResolver {
+    private static final Logger LOG = Logger.getInstance(IncludeGraphResolver.class);
+
+    private final Project mProject;
+    private final Module mModule;
+    private final FieldNamingStrategy mNaming;
+    // layout the session started from; the IDs of other layouts are included ones
+    private String mRoot;
+    // layout name -> its expanded IDs, for this session
+    private final Map<String, List<Element>> mExpanded = new HashMap<String, List<Element>>();
+    // layouts on the current include path
+    private final Set<String> mExpanding = new HashSet<String>();
+
+    public IncludeGraphResolver(@NotNull Project project, @Nullable Module module, @NotNull FieldNamingStrategy naming) {
+        mProject = project;
+        mModule = module;
+        mNaming = naming;
+    }
+
+    @NotNull
+    public ArrayList<Element> resolve(@NotNull String layoutName) {
+        if (!layoutName.equals(mRoot)) {
+            mExpanded.clear(); // field names depend on the root
+            mRoot = layoutName;
+        }
+        return new ArrayList<Element>(expand(layoutName));
+    }
+
+    private List<Element> expand(String layoutName) {
+        List<Element> expanded = mExpanded.get(layoutName);
+        if (expanded != null) {
+            return expanded;
+        }
+        if (!mExpanding.add(layoutName)) {
+            LOG.warn("Include cycle detected at layout " + layoutName);
+            return Collections.emptyList();
+        }
+
+        try {
+            expanded = expand(getVariants(layoutName));
+        } finally {
+            mExpanding.remove(layoutName);
+        }
+        mExpanded.put(layoutName, expanded);
+        return expanded;
+    }
+
+    private List<Element> expand(LayoutVariants variants) {
+        // resolve includes first: an include which can't be resolved is treated as a plain tag
+        Set<LayoutEntry> includes = new HashSet<LayoutEntry>();
+        Map<LayoutEntry, Element> direct = new HashMap<LayoutEntry, Element>();
+        Set<String> declared = new HashSet<String>();
+        for (LayoutEntry entry : variants.getEntries()) {
+            if (entry.isInclude() && !getVariants(entry.include).isEmpty()) {
+                includes.add(entry);
+                continue;
+            }
+
+            Element element = createElement(entry, variants);
+            if (element != null) {
+                direct.put(entry, element);
+                declared.add(element.getFullID());
+            }
+        }
+
+        // document order; an ID of an include is dropped when the layout itself or an earlier tag declares it
+        Map<String, Element> result = new LinkedHashMap<String, Element>();
+        for (LayoutEntry entry : variants.getEntries()) {
+            if (!includes.contains(entry)) {
+                Element element = direct.get(entry);
+                if (element != null && !result.containsKey(element.getFullID())) {
+                    result.put(element.getFullID(), element);
+                }
+                continue;
+            }
+
+            for (Element element : expand(entry.include)) {
+                String fullID = element.getFullID();
+                if (!declared.contains(fullID) && !result.containsKey(fullID)) {
+                    result.put(fullID, element);
+                }
+            }
+        }
+        return new ArrayList<Element>(result.values());
+    }
+
+    private LayoutVariants getVariants(String layoutName) {
+        return LayoutVariantResolver.getVariants(mProject, mModule, layoutName);
+    }
+
+    private Element createElement(LayoutEntry entry, LayoutVariants variants) {
+        if (entry.id == null) {
+            return null; // missing android:id attribute
+        }
+
+        try {
+            String includedLayout = variants.name.equals(mRoot) ? null : variants.name;
+            Element element = new Element(entry.name, entry.id, mNaming, includedLayout);
+            element.layout = variants.name;
+            element.variants = variants.getPartialQualifiers(entry);
+            return element;
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Skipping " + entry.id + " of layout " + variants.name, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.footprint.viewgenerator.layout;
+
+import com.footprint.viewgenerator.index.LayoutEntry;
+import com.intellij.AppTopics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileDocumentManagerAdapter;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerAdapter;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlAttribute;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory entries of the layouts being edited, kept up to date from {@link PsiTreeChangeEvent}s.
+ * <p>
+ * A layout is walked once, when its entries are first asked for, into a tree of its tags indexed by tag; the tree
+ * keeps the document order, so nothing is ever sorted. Afterwards an edit only reads again what it touched: the
+ * tag owning a changed attribute or name, or the child tags of the tag a tag was added to or removed from. Models
+ * are dropped when their layout is closed, or saved while not open, since saved layouts are read from disk.
+ */
+public class LayoutIdModel implements Disposable {
+    private final ConcurrentMap<VirtualFile, FileModel> mModels = new ConcurrentHashMap<VirtualFile, FileModel>();
+
+    public static LayoutIdModel getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, LayoutIdModel.class);
+    }
+
+    public LayoutIdModel(@NotNull final Project project) {
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new ModelUpdater(), this);
+        MessageBusConnection connection = project.getMessageBus().connect(this);
+        connection.subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerAdapter() {
+            @Override
+            public void fileClosed(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+                mModels.remove(file);
+            }
+        });
+        connection.subscribe(AppTopics.FILE_DOCUMENT_SYNC, new FileDocumentManagerAdapter() {
+            @Override
+            public void beforeDocumentSaving(@NotNull Document document) {
+                VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+                if (file != null && !project.isDisposed() && !FileEditorManager.getInstance(project).isFileOpen(file)) {
+                    mModels.remove(file);
+                }
+            }
+        });
+    }
+
+    /**
+     * Entries of the layout in document order, includes are not expanded
+     */
+    @NotNull
+    public List<LayoutEntry> getEntries(@NotNull PsiFile file) {
+        if (!(file instanceof XmlFile)) {
+            return LayoutScanner.scanPsi(file);
+        }
+
+        VirtualFile virtualFile = file.getViewProvider().getVirtualFile();
+        FileModel model = mModels.get(virtualFile);
+        if (model == null || model.file != file) {
+            model = new FileModel((XmlFile) file);
+            mModels.put(virtualFile, model);
+        }
+        return model.getEntries();
+    }
+
+    @Override
+    public void dispose() {
+        mModels.clear();
+    }
+
+    @Nullable
+    private FileModel getModel(PsiTreeChangeEvent event) {
+        PsiFile file = event.getFile();
+        if (file == null) {
+            return null;
+        }
+        FileModel model = mModels.get(file.getViewProvider().getVirtualFile());
+        return model != null && model.file == file ? model : null;
+    }
+
+    /**
+     * A tag of the layout with its entry, if it has one, and its child tags in document order
+     */
+    private static class Node {
+        final XmlTag tag;
+        final Node parent;
+        LayoutEntry entry;
+        List<Node> children = Collections.emptyList();
+
+        Node(XmlTag tag, @Nullable Node parent) {
+            this.tag = tag;
+            this.parent = parent;
+        }
+    }
+
+    private static class FileModel {
+        final XmlFile file;
+        private final Map<XmlTag, Node> mNodes = new HashMap<XmlTag, Node>();
+        private Node mRoot;
+        private List<LayoutEntry> mSnapshot;
+
+        FileModel(XmlFile file) {
+            this.file = file;
+            rebuild();
+        }
+
+        synchronized List<LayoutEntry> getEntries() {
+            if (mSnapshot == null) {
+                List<LayoutEntry> snapshot = new ArrayList<LayoutEntry>(mNodes.size());
+                if (mRoot != null) {
+                    collect(mRoot, snapshot);
+                }
+                mSnapshot = Collections.unmodifiableList(snapshot);
+            }
+            return mSnapshot;
+        }
+
+        synchronized void rebuild() {
+            mNodes.clear();
+            XmlTag root = file.getRootTag();
+            mRoot = root != null ? build(root, null) : null;
+            mSnapshot = null;
+        }
+
+        /**
+         * Read the tag alone again, e.g. after an attribute or its name changed
+         */
+        synchronized void patchTag(@NotNull XmlTag tag) {
+            Node node = mNodes.get(tag);
+            if (node == null) {
+                XmlTag parent = tag.getParentTag();
+                if (parent == null) {
+                    rebuild();
+                } else {
+                    syncChildren(parent);
+                }
+                return;
+            }
+            node.entry = LayoutScanner.scanTag(tag);
+            mSnapshot = null;
+        }
+
+        /**
+         * Match the child tags of the tag again: new ones are walked, gone ones forgotten, the others are kept
+         */
+        synchronized void syncChildren(@NotNull XmlTag tag) {
+            Node node = mNodes.get(tag);
+            if (node == null || !tag.isValid()) {
+                rebuild();
+                return;
+            }
+
+            XmlTag[] subTags = tag.getSubTags();
+            Set<Node> kept = new HashSet<Node>();
+            List<Node> children = new ArrayList<Node>(subTags.length);
+            for (XmlTag subTag : subTags) {
+                Node child = mNodes.get(subTag);
+                if (child == null || child.parent != node) {
+                    child = build(subTag, node);
+                } else {
+                    kept.add(child);
+                }
+                children.add(child);
+            }
+            for (Node child : node.children) {
+                if (!kept.contains(child)) {
+                    forget(child);
+                }
+            }
+            node.children = children;
+            mSnapshot = null;
+        }
+
+        private Node build(XmlTag tag, @Nullable Node parent) {
+            Node node = new Node(tag, parent);
+            node.entry = LayoutScanner.scanTag(tag);
+            mNodes.put(tag, node);
+            XmlTag[] subTags = tag.getSubTags();
+            if (subTags.length > 0) {
+                node.children = new ArrayList<Node>(subTags.length);
+                for (XmlTag subTag : subTags) {
+                    node.children.add(build(subTag, node));
+                }
+            }
+            return node;
+        }
+
+        private void forget(Node node) {
+            if (mNodes.get(node.tag) == node) {
+                mNodes.remove(node.tag);
+            }
+            for (Node child : node.children) {
+                forget(child);
+            }
+        }
+
+        private static void collect(Node node, List<LayoutEntry> entries) {
+            if (node.entry != null) {
+                entries.add(node.entry);
+            }
+            for (Node child : node.children) {
+                collect(child, entries);
+            }
+        }
+    }
+
+    private class ModelUpdater extends PsiTreeChangeAdapter {
+        @Override
+        public void childAdded(@NotNull PsiTreeChangeEvent event) {
+            update(event.getParent(), event.getChild() instanceof XmlTag);
+        }
+
+        @Override
+        public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+            update(event.getParent(), event.getOldChild() instanceof XmlTag || event.getNewChild() instanceof XmlTag);
+        }
+
+        @Override
+        public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+            update(event.getParent(), event.getChild() instanceof XmlTag);
+        }
+
+        @Override
+        public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+            update(event.getParent(), true); // no child to tell what changed
+        }
+
+        @Override
+        public void childMoved(@NotNull PsiTreeChangeEvent event) {
+            update(event.getOldParent(), true);
+            update(event.getNewParent(), true);
+        }
+
+        @Override
+        public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+            if (PsiTreeChangeEvent.PROP_UNLOADED_PSI.equals(event.getPropertyName())) {
+                FileModel model = getModel(event);
+                if (model != null) {
+                    model.rebuild();
+                }
+            }
+        }
+
+        /**
+         * Every change is read again from the tag it happened in: an attribute or the name of the tag changes its
+         * own entry, a tag added or removed changes its children. A change outside of the tags, e.g. of the root
+         * tag or the prolog, is read again from scratch.
+         *
+         * @param tags whether child tags may have been added or removed
+         */
+        private void update(@Nullable PsiElement parent, boolean tags) {
+            if (parent == null || !parent.isValid()) {
+                return;
+            }
+            PsiFile file = parent.getContainingFile();
+            FileModel model = file != null ? mModels.get(file.getViewProvider().getVirtualFile()) : null;
+            if (model == null || model.file != file) {
+                return;
+            }
+
+            XmlTag tag = parent instanceof XmlTag ? (XmlTag) parent : PsiTreeUtil.getParentOfType(parent, XmlTag.class);
+            if (tag == null) {
+                model.rebuild();
+                return;
+            }
+            model.patchTag(tag);
+            if (tags && PsiTreeUtil.getParentOfType(parent, XmlAttribute.class, false) == null) {
+                model.syncChildren(tag);
+            }
+        }
+    }
+}
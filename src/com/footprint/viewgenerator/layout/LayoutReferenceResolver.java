@@ -0,0 +1,242 @@
+package com.footprint.viewgenerator.layout;
+
+import com.footprint.viewgenerator.common.BindingAnalyzer;
+import com.footprint.viewgenerator.common.StringUtils;
+import com.footprint.viewgenerator.common.Utils;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Finds the layouts a class inflates from the structure of its code: R.layout.xxx passed to setContentView or
+ * inflate (DataBindingUtil included), used in onCreateView/onCreateViewHolder or returned as the layout of a base
+ * class, and generated data binding classes, e.g. ActivityMainBinding.inflate(...).
+ * <p>
+ * References are resolved to the R.layout field when the R class is available. The layouts of a class are cached
+ * on the class until its file changes, so the action finds the layout from anywhere in the class without scanning
+ * its methods again. While indexes are being built references are only matched by their structure, and nothing is
+ * cached.
+ */
+public final class LayoutReferenceResolver {
+    private static final String BINDING_SUFFIX = "Binding";
+    private static final Set<String> INFLATE_CALLS = new HashSet<String>(Arrays.asList(
+            Utils.METHOD_NAME_SET_CONTENT_VIEW, "inflate"));
+    private static final Set<String> INFLATE_METHODS = new HashSet<String>(Arrays.asList(
+            Utils.METHOD_NAME_ON_CREATE_VIEW, Utils.METHOD_NAME_ON_CREATE_VIEW_HOLDER));
+
+    private LayoutReferenceResolver() {
+
+    }
+
+    /**
+     * Find the layout for the caret: the selected layout name, the R.layout reference under the caret, or else the
+     * first layout inflated by the class around the caret
+     *
+     * @param editor
+     * @param file
+     * @return null if no layout is found
+     */
+    @Nullable
+    public static PsiFile findLayout(@NotNull Editor editor, @NotNull PsiFile file) {
+        Project project = file.getProject();
+        Module module = ModuleUtil.findModuleForPsiElement(file);
+        boolean resolve = !DumbService.isDumb(project);
+
+        String selected = editor.getSelectionModel().getSelectedText();
+        if (selected != null && PsiNameHelper.getInstance(project).isIdentifier(selected.trim())) {
+            PsiFile layout = Utils.findLayoutResource(project, module, selected.trim());
+            if (layout != null) {
+                return layout;
+            }
+        }
+
+        int offset = editor.getCaretModel().getOffset();
+        String layoutName = getLayoutNameAt(file, offset, resolve);
+        if (layoutName == null) {
+            layoutName = getLayoutNameAt(file, offset - 1, resolve);
+        }
+        if (layoutName != null) {
+            return Utils.findLayoutResource(project, module, layoutName);
+        }
+
+        PsiClass psiClass = PsiTreeUtil.getParentOfType(file.findElementAt(offset), PsiClass.class, false);
+        while (psiClass instanceof PsiAnonymousClass) {
+            psiClass = PsiTreeUtil.getParentOfType(psiClass, PsiClass.class);
+        }
+        if (psiClass == null) {
+            return null;
+        }
+        List<String> layoutNames = resolve ? getInflatedLayouts(psiClass) : collectInflatedLayouts(psiClass, false);
+        for (String name : layoutNames) {
+            PsiFile layout = Utils.findLayoutResource(project, module, name);
+            if (layout != null) {
+                return layout;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Names of the layouts the class inflates, in the order they appear in it
+     */
+    @NotNull
+    public static List<String> getInflatedLayouts(@NotNull final PsiClass psiClass) {
+        return CachedValuesManager.getCachedValue(psiClass, new CachedValueProvider<List<String>>() {
+            @Override
+            public Result<List<String>> compute() {
+                return Result.create(collectInflatedLayouts(psiClass, true), psiClass.getContainingFile());
+            }
+        });
+    }
+
+    @NotNull
+    private static List<String> collectInflatedLayouts(@NotNull final PsiClass psiClass, final boolean resolve) {
+        final Set<String> layouts = new LinkedHashSet<String>();
+        psiClass.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitClass(PsiClass aClass) {
+                // nested classes inflate their own layouts, anonymous ones belong to this class
+                if (aClass == psiClass || aClass instanceof PsiAnonymousClass) {
+                    super.visitClass(aClass);
+                }
+            }
+
+            @Override
+            public void visitReferenceExpression(PsiReferenceExpression expression) {
+                super.visitReferenceExpression(expression);
+                String layoutName = getInflatedLayoutName(expression, resolve);
+                if (layoutName != null) {
+                    layouts.add(layoutName);
+                }
+            }
+        });
+        return new ArrayList<String>(layouts);
+    }
+
+    /**
+     * Name of the layout inflated through the expression
+     *
+     * @param expression R.layout.xxx, or the method of a XxxBinding.inflate(...) call
+     * @param resolve    false when references can't be resolved, e.g. while indexing
+     * @return null if the expression doesn't inflate a layout
+     */
+    @Nullable
+    public static String getInflatedLayoutName(@NotNull PsiReferenceExpression expression, boolean resolve) {
+        String layoutName = getLayoutName(expression, resolve);
+        if (layoutName != null) {
+            return isInflation(expression) ? layoutName : null;
+        }
+        return getBindingLayoutName(expression);
+    }
+
+    /**
+     * xxx of R.layout.xxx, also for android.R.layout and qualified R classes
+     *
+     * @param expression
+     * @param resolve    resolve the reference to the R field first, falling back to its structure when R is
+     *                   not generated yet
+     * @return
+     */
+    @Nullable
+    public static String getLayoutName(@NotNull PsiReferenceExpression expression, boolean resolve) {
+        if (resolve) {
+            PsiElement target = expression.resolve();
+            if (target instanceof PsiField) {
+                PsiClass typeClass = ((PsiField) target).getContainingClass();
+                PsiClass rClass = typeClass != null ? typeClass.getContainingClass() : null;
+                if (typeClass != null && rClass != null && "layout".equals(typeClass.getName())
+                        && "R".equals(rClass.getName())) {
+                    return ((PsiField) target).getName();
+                }
+                return null; // a field named like a layout, but not in R.layout
+            }
+        }
+
+        if (BindingAnalyzer.getResourceReference(expression, "layout") == null) {
+            return null;
+        }
+        return expression.getReferenceName();
+    }
+
+    /**
+     * Is the R.layout reference used to inflate the layout?
+     */
+    private static boolean isInflation(PsiReferenceExpression expression) {
+        PsiElement parent = PsiTreeUtil.skipParentsOfType(expression, PsiParenthesizedExpression.class);
+        if (parent instanceof PsiReturnStatement) {
+            return true; // e.g. getLayoutId() of a base activity
+        }
+        if (parent instanceof PsiExpressionList && parent.getParent() instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression call = (PsiMethodCallExpression) parent.getParent();
+            if (isInflateCall(call.getMethodExpression().getReferenceName())) {
+                return true; // includes DataBindingUtil.setContentView/inflate
+            }
+        }
+
+        PsiMethod method = PsiTreeUtil.getParentOfType(expression, PsiMethod.class);
+        return method != null && isInflateMethod(method.getName());
+    }
+
+    /**
+     * Is the layout passed to a call of this name inflated, e.g. setContentView or inflate?
+     */
+    public static boolean isInflateCall(@Nullable String methodName) {
+        return INFLATE_CALLS.contains(methodName);
+    }
+
+    /**
+     * Is a layout used in a method of this name inflated, e.g. onCreateView?
+     */
+    public static boolean isInflateMethod(@Nullable String methodName) {
+        return INFLATE_METHODS.contains(methodName);
+    }
+
+    /**
+     * activity_main for ActivityMainBinding
+     *
+     * @param className short name of a generated data binding class
+     * @return null if the name is not the one of a binding class
+     */
+    @Nullable
+    public static String getBindingLayoutName(@Nullable String className) {
+        if (className == null || className.length() <= BINDING_SUFFIX.length() || !className.endsWith(BINDING_SUFFIX)
+                || !Character.isUpperCase(className.charAt(0))) {
+            return null;
+        }
+        return StringUtils.transformCamel2Underscore(className.substring(0, className.length() - BINDING_SUFFIX.length()));
+    }
+
+    /**
+     * activity_main of ActivityMainBinding.inflate(...)
+     */
+    @Nullable
+    private static String getBindingLayoutName(PsiReferenceExpression expression) {
+        if (!"inflate".equals(expression.getReferenceName()) || !(expression.getParent() instanceof PsiMethodCallExpression)) {
+            return null;
+        }
+        PsiExpression qualifier = expression.getQualifierExpression();
+        if (!(qualifier instanceof PsiReferenceExpression)) {
+            return null;
+        }
+        return getBindingLayoutName(((PsiReferenceExpression) qualifier).getReferenceName());
+    }
+
+    @Nullable
+    private static String getLayoutNameAt(PsiFile file, int offset, boolean resolve) {
+        PsiElement element = offset >= 0 ? file.findElementAt(offset) : null;
+        if (!(element instanceof PsiIdentifier) || !(element.getParent() instanceof PsiReferenceExpression)) {
+            return null;
+        }
+        return getLayoutName((PsiReferenceExpression) element.getParent(), resolve);
+    }
+}
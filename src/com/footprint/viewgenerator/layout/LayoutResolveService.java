@@ -0,0 +1,440 @@
+package com.footprint.viewgenerator.layout;
+
+import com.footprint.viewgenerator.common.Utils;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectTopics;
+import com.intellij.openapi.roots.ModuleRootAdapter;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.psi.*;
+import com.intellij.psi.search.EverythingGlobalScope;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.util.PathUtil;
+import com.intellij.util.Processor;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Project level cache of layout lookups.
+ * <p>
+ * Layout names are resolved the way Android merges resources: for every qualifier folder, the variant of the
+ * module itself wins, then the variants of its dependencies in declaration order, then libraries. Results are
+ * cached per (module, name) and dropped one name at a time when a file with that name changes in the VFS,
+ * or when the PSI of such a layout is edited; everything is dropped when module roots change.
+ * <p>
+ * While indexes are being built, layouts are found by walking the res/layout* folders of the modules in the VFS
+ * instead. Those results may miss library layouts, so they are not cached.
+ */
+public class LayoutResolveService implements Disposable {
+    private static final String XML_FILE_SUFFIX = ".xml";
+    private static final String RES_FOLDER = "res";
+
+    private final Project mProject;
+    private final ConcurrentMap<Module, ModuleCache> mCaches = new ConcurrentHashMap<Module, ModuleCache>();
+    // lookups without a module, i.e. through the whole project
+    private final ModuleCache mProjectCache = new ModuleCache();
+
+    public static LayoutResolveService getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, LayoutResolveService.class);
+    }
+
+    public LayoutResolveService(@NotNull Project project) {
+        mProject = project;
+
+        MessageBusConnection connection = project.getMessageBus().connect(this);
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (VFileEvent event : events) {
+                    onFileChanged(event);
+                }
+            }
+        });
+        connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter() {
+            @Override
+            public void rootsChanged(ModuleRootEvent event) {
+                invalidateAll();
+            }
+        });
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new LayoutChangeListener(), this);
+    }
+
+    /**
+     * Winning file of every qualifier variant of a layout, the default variant first
+     *
+     * @param module     module whose resources are merged, null to search the whole project
+     * @param layoutName layout name without extension
+     * @return
+     */
+    @NotNull
+    public List<VirtualFile> resolveVariants(@Nullable Module module, @NotNull String layoutName) {
+        ModuleCache cache = getCache(module);
+        List<VirtualFile> variants = cache.layouts.get(layoutName);
+        if (variants == null) {
+            variants = doResolveVariants(module, layoutName);
+            if (!DumbService.isDumb(mProject)) {
+                cache.layouts.put(layoutName, variants);
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * The layout/ variant of a layout, or its first variant when there is no default one
+     */
+    @Nullable
+    public VirtualFile resolve(@Nullable Module module, @NotNull String layoutName) {
+        List<VirtualFile> variants = resolveVariants(module, layoutName);
+        return variants.isEmpty() ? null : variants.get(0);
+    }
+
+    /**
+     * Merged IDs of every variant of a layout
+     */
+    @NotNull
+    public LayoutVariants getVariants(@Nullable Module module, @NotNull String layoutName) {
+        ModuleCache cache = getCache(module);
+        LayoutVariants variants = cache.variants.get(layoutName);
+        if (variants == null) {
+            variants = LayoutVariantResolver.merge(mProject, layoutName, resolveVariants(module, layoutName));
+            if (!DumbService.isDumb(mProject)) {
+                cache.variants.put(layoutName, variants);
+            }
+        }
+        return variants;
+    }
+
+    private List<VirtualFile> doResolveVariants(@Nullable Module module, @NotNull String layoutName) {
+        String fileName = layoutName + XML_FILE_SUFFIX;
+        Collection<VirtualFile> files = Collections.emptyList();
+        if (DumbService.isDumb(mProject)) {
+            files = findLayoutFilesInVfs(module, fileName);
+        } else if (module != null) {
+            files = FilenameIndex.getVirtualFilesByName(mProject, fileName, module.getModuleWithDependenciesAndLibrariesScope(false));
+        }
+        if (files.isEmpty() && !DumbService.isDumb(mProject)) {
+            // fallback to search through the whole project
+            // useful when the project is not properly configured - when the resource directory is not configured
+            files = FilenameIndex.getVirtualFilesByName(mProject, fileName, new EverythingGlobalScope(mProject));
+        }
+
+        List<Module> order = module != null ? getModuleOrder(module) : Collections.<Module>emptyList();
+        ProjectFileIndex fileIndex = ProjectRootManager.getInstance(mProject).getFileIndex();
+        Map<String, VirtualFile> winners = new TreeMap<String, VirtualFile>(LayoutVariants.QUALIFIER_ORDER);
+        Map<String, Integer> ranks = new HashMap<String, Integer>();
+        for (VirtualFile file : files) {
+            if (!Utils.isLayoutFile(file)) {
+                continue;
+            }
+
+            String qualifier = LayoutVariants.getQualifier(file);
+            int rank = order.indexOf(fileIndex.getModuleForFile(file));
+            if (rank < 0) {
+                rank = order.size(); // libraries come after every module
+            }
+            Integer best = ranks.get(qualifier);
+            if (best == null || rank < best) {
+                ranks.put(qualifier, rank);
+                winners.put(qualifier, file);
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<VirtualFile>(winners.values()));
+    }
+
+    /**
+     * Layout files of that name in the res/layout* folders of the module and its dependencies, or of every module
+     * when there are none; found through the VFS, for when indexes are not ready
+     */
+    private Collection<VirtualFile> findLayoutFilesInVfs(@Nullable Module module, @NotNull String fileName) {
+        List<VirtualFile> files = new ArrayList<VirtualFile>();
+        if (module != null) {
+            for (Module dependency : getModuleOrder(module)) {
+                collectLayoutFiles(dependency, fileName, files);
+            }
+        }
+        if (files.isEmpty()) {
+            for (Module projectModule : ModuleManager.getInstance(mProject).getModules()) {
+                collectLayoutFiles(projectModule, fileName, files);
+            }
+        }
+        return files;
+    }
+
+    private void collectLayoutFiles(@NotNull Module module, @NotNull String fileName, @NotNull List<VirtualFile> files) {
+        for (VirtualFile folder : getLayoutFolders(module)) {
+            VirtualFile file = folder.isValid() ? folder.findChild(fileName) : null;
+            if (file != null && !file.isDirectory() && !files.contains(file)) {
+                files.add(file);
+            }
+        }
+    }
+
+    /**
+     * The res/layout* folders under the content roots of the module, build output and other excluded folders
+     * skipped
+     */
+    private List<VirtualFile> getLayoutFolders(@NotNull Module module) {
+        ModuleCache cache = getCache(module);
+        List<VirtualFile> folders = cache.layoutFolders;
+        if (folders == null) {
+            final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(mProject).getFileIndex();
+            final List<VirtualFile> found = new ArrayList<VirtualFile>();
+            for (VirtualFile root : ModuleRootManager.getInstance(module).getContentRoots()) {
+                VfsUtilCore.visitChildrenRecursively(root, new VirtualFileVisitor() {
+                    @Override
+                    public boolean visitFile(@NotNull VirtualFile file) {
+                        if (!file.isDirectory() || fileIndex.isExcluded(file)) {
+                            return false;
+                        }
+                        if (!RES_FOLDER.equals(file.getName())) {
+                            return true;
+                        }
+                        for (VirtualFile child : file.getChildren()) {
+                            if (child.isDirectory() && isLayoutFolder(child.getName())) {
+                                found.add(child);
+                            }
+                        }
+                        return false;
+                    }
+                });
+            }
+            folders = Collections.unmodifiableList(found);
+            cache.layoutFolders = folders;
+        }
+        return folders;
+    }
+
+    /**
+     * The module first, then its dependencies in declaration order
+     */
+    private List<Module> getModuleOrder(@NotNull Module module) {
+        ModuleCache cache = getCache(module);
+        List<Module> order = cache.moduleOrder;
+        if (order == null) {
+            final Set<Module> modules = new LinkedHashSet<Module>();
+            modules.add(module);
+            ModuleRootManager.getInstance(module).orderEntries().recursively().withoutSdk().withoutLibraries()
+                    .forEachModule(new Processor<Module>() {
+                        @Override
+                        public boolean process(Module dependency) {
+                            modules.add(dependency);
+                            return true;
+                        }
+                    });
+            order = new ArrayList<Module>(modules);
+            cache.moduleOrder = order;
+        }
+        return order;
+    }
+
+    private ModuleCache getCache(@Nullable Module module) {
+        if (module == null) {
+            return mProjectCache;
+        }
+
+        ModuleCache cache = mCaches.get(module);
+        if (cache == null) {
+            ModuleCache created = new ModuleCache();
+            cache = mCaches.putIfAbsent(module, created);
+            if (cache == null) {
+                cache = created;
+            }
+        }
+        return cache;
+    }
+
+    private void onFileChanged(VFileEvent event) {
+        if (event instanceof VFilePropertyChangeEvent) {
+            VFilePropertyChangeEvent change = (VFilePropertyChangeEvent) event;
+            if (!VirtualFile.PROP_NAME.equals(change.getPropertyName())) {
+                return;
+            }
+            if (change.getFile().isDirectory()) {
+                if (affectsLayoutFolders(change.getFile())) {
+                    invalidateAll();
+                }
+                return;
+            }
+            invalidateFile(String.valueOf(change.getOldValue()));
+            invalidateFile(String.valueOf(change.getNewValue()));
+            return;
+        }
+
+        VirtualFile file = event.getFile();
+        if (file != null && file.isDirectory()) {
+            if (affectsLayoutFolders(file)) {
+                invalidateAll(); // a whole resource folder came or went
+            }
+            return;
+        }
+        invalidateFile(PathUtil.getFileName(event.getPath()));
+    }
+
+    /**
+     * Can a directory which came, went, moved or was renamed change the layouts? Only res and res/layout* folders
+     * in the content of a module can, or folders containing cached ones; build output and other excluded folders,
+     * which come and go with every build, never do.
+     */
+    private boolean affectsLayoutFolders(@NotNull VirtualFile dir) {
+        if (dir.isValid()) {
+            ProjectFileIndex fileIndex = ProjectRootManager.getInstance(mProject).getFileIndex();
+            if (!fileIndex.isInContent(dir) || fileIndex.isExcluded(dir)) {
+                return false;
+            }
+            String name = dir.getName();
+            VirtualFile parent = dir.getParent();
+            if (RES_FOLDER.equals(name) || dir.findChild(RES_FOLDER) != null
+                    || isLayoutFolder(name) && parent != null && RES_FOLDER.equals(parent.getName())) {
+                return true;
+            }
+        }
+        // a deleted folder can't be looked up any more, but it matters only if something cached was in it
+        return containsCached(dir, mProjectCache) || containsCachedInModules(dir);
+    }
+
+    private boolean containsCachedInModules(@NotNull VirtualFile dir) {
+        for (ModuleCache cache : mCaches.values()) {
+            if (containsCached(dir, cache)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsCached(@NotNull VirtualFile dir, @NotNull ModuleCache cache) {
+        List<VirtualFile> folders = cache.layoutFolders;
+        if (folders != null) {
+            for (VirtualFile folder : folders) {
+                if (VfsUtilCore.isAncestor(dir, folder, false)) {
+                    return true;
+                }
+            }
+        }
+        for (List<VirtualFile> variants : cache.layouts.values()) {
+            for (VirtualFile file : variants) {
+                if (VfsUtilCore.isAncestor(dir, file, true)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLayoutFolder(@NotNull String name) {
+        return name.equals("layout") || name.startsWith("layout-");
+    }
+
+    private void invalidateFile(String fileName) {
+        for (ModuleCache cache : mCaches.values()) {
+            cache.invalidate(fileName);
+        }
+        mProjectCache.invalidate(fileName);
+    }
+
+    private void invalidateAll() {
+        mCaches.clear();
+        mProjectCache.clear();
+    }
+
+    @Override
+    public void dispose() {
+        invalidateAll();
+    }
+
+    private static class ModuleCache {
+        final ConcurrentMap<String, List<VirtualFile>> layouts = new ConcurrentHashMap<String, List<VirtualFile>>();
+        final ConcurrentMap<String, LayoutVariants> variants = new ConcurrentHashMap<String, LayoutVariants>();
+        volatile List<Module> moduleOrder;
+        volatile List<VirtualFile> layoutFolders;
+
+        void invalidate(String fileName) {
+            if (fileName.endsWith(XML_FILE_SUFFIX)) {
+                String layoutName = fileName.substring(0, fileName.length() - XML_FILE_SUFFIX.length());
+                layouts.remove(layoutName);
+                variants.remove(layoutName);
+            }
+        }
+
+        void invalidateContent(String layoutName) {
+            variants.remove(layoutName);
+        }
+
+        void clear() {
+            layouts.clear();
+            variants.clear();
+            moduleOrder = null;
+            layoutFolders = null;
+        }
+    }
+
+    /**
+     * Unsaved edits of a layout change its IDs without any VFS event
+     */
+    private class LayoutChangeListener extends PsiTreeChangeAdapter {
+        @Override
+        public void childAdded(@NotNull PsiTreeChangeEvent event) {
+            onPsiChanged(event);
+        }
+
+        @Override
+        public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+            onPsiChanged(event);
+        }
+
+        @Override
+        public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+            onPsiChanged(event);
+        }
+
+        @Override
+        public void childMoved(@NotNull PsiTreeChangeEvent event) {
+            onPsiChanged(event);
+        }
+
+        @Override
+        public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+            onPsiChanged(event);
+        }
+
+        @Override
+        public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+            onPsiChanged(event);
+        }
+
+        private void onPsiChanged(PsiTreeChangeEvent event) {
+            PsiFile file = event.getFile();
+            if (file == null) {
+                return;
+            }
+            VirtualFile virtualFile = file.getViewProvider().getVirtualFile();
+            if (!Utils.isLayoutFile(virtualFile)) {
+                return;
+            }
+
+            String layoutName = virtualFile.getNameWithoutExtension();
+            for (ModuleCache cache : mCaches.values()) {
+                cache.invalidateContent(layoutName);
+            }
+            mProjectCache.invalidateContent(layoutName);
+        }
+    }
+}
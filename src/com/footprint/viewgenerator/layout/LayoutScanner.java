@@ -0,0 +1,190 @@
+package com.footprint.viewgenerator.layout;
+
+import com.footprint.viewgenerator.common.Utils;
+import com.footprint.viewgenerator.index.LayoutEntry;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.XmlRecursiveElementVisitor;
+import com.intellij.psi.xml.XmlTag;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the (tag/class, android:id, include) entries of a single layout, in document order.
+ * <p>
+ * Saved layouts are streamed straight from their bytes, without building any PSI. Layouts with unsaved edits are
+ * read from their PSI through {@link LayoutIdModel}, because then the bytes on disk are stale.
+ */
+public final class LayoutScanner {
+    private static final Logger LOG = Logger.getInstance(LayoutScanner.class);
+    private static final XMLInputFactory sFactory = createFactory();
+
+    private LayoutScanner() {
+
+    }
+
+    @NotNull
+    public static List<LayoutEntry> scan(@NotNull Project project, @NotNull VirtualFile file) {
+        if (hasUnsavedChanges(file)) {
+            PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+            if (psiFile != null) {
+                return LayoutIdModel.getInstance(project).getEntries(psiFile);
+            }
+        }
+
+        try {
+            return scan(file.contentsToByteArray());
+        } catch (IOException e) {
+            LOG.info("Can't read layout " + file.getPath(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Are the bytes of the file stale because its document has unsaved edits?
+     */
+    public static boolean hasUnsavedChanges(@NotNull VirtualFile file) {
+        FileDocumentManager documentManager = FileDocumentManager.getInstance();
+        Document document = documentManager.getCachedDocument(file);
+        return document != null && documentManager.isDocumentUnsaved(document);
+    }
+
+    /**
+     * Stream the entries out of raw layout content. A malformed layout yields the entries before the error.
+     *
+     * @param content
+     * @return
+     */
+    @NotNull
+    public static List<LayoutEntry> scan(@NotNull byte[] content) {
+        List<LayoutEntry> entries = new ArrayList<LayoutEntry>();
+        XMLStreamReader reader = null;
+        try {
+            reader = sFactory.createXMLStreamReader(new ByteArrayInputStream(content));
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+
+                String id = null;
+                String clazz = null;
+                String layout = null;
+                for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+                    String name = reader.getAttributeLocalName(i);
+                    String prefix = reader.getAttributePrefix(i);
+                    if (prefix == null || prefix.isEmpty()) {
+                        if ("class".equals(name)) {
+                            clazz = reader.getAttributeValue(i);
+                        } else if ("layout".equals(name)) {
+                            layout = reader.getAttributeValue(i);
+                        }
+                    } else if ("id".equals(name) && "android".equals(prefix)) {
+                        id = reader.getAttributeValue(i);
+                    }
+                }
+
+                LayoutEntry entry = createEntry(getTagName(reader), id, clazz, layout);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } catch (XMLStreamException e) {
+            LOG.debug("Malformed layout", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Read the entries of a layout from its PSI
+     *
+     * @param file
+     * @return
+     */
+    @NotNull
+    public static List<LayoutEntry> scanPsi(@NotNull PsiFile file) {
+        final List<LayoutEntry> entries = new ArrayList<LayoutEntry>();
+        file.accept(new XmlRecursiveElementVisitor() {
+
+            @Override
+            public void visitElement(final PsiElement element) {
+                if (element instanceof XmlTag) {
+                    LayoutEntry entry = scanTag((XmlTag) element);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                }
+
+                super.visitElement(element);
+            }
+        });
+
+        return entries;
+    }
+
+    /**
+     * Read the entry of a single tag, ignoring its children
+     *
+     * @param tag
+     * @return null if the tag has neither an android:id nor an include reference
+     */
+    @Nullable
+    public static LayoutEntry scanTag(@NotNull XmlTag tag) {
+        return createEntry(tag.getName(), tag.getAttributeValue("android:id", null),
+                tag.getAttributeValue("class", null), tag.getAttributeValue("layout", null));
+    }
+
+    @Nullable
+    private static LayoutEntry createEntry(String tagName, String id, String clazz, String layout) {
+        String include = null;
+        if (tagName.equalsIgnoreCase("include")) {
+            include = Utils.getLayoutName(layout);
+        }
+
+        if (id == null && include == null) {
+            return null; // missing android:id attribute
+        }
+
+        // check if there is defined custom class
+        return new LayoutEntry(clazz != null ? clazz : tagName, id, include);
+    }
+
+    private static String getTagName(XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        if (prefix == null || prefix.isEmpty()) {
+            return reader.getLocalName();
+        }
+        return prefix + ":" + reader.getLocalName();
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+}
@@ -0,0 +1,73 @@
+package com.footprint.viewgenerator.layout;
+
+import com.footprint.viewgenerator.index.LayoutEntry;
+import com.footprint.viewgenerator.index.LayoutIdIndex;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the qualifier variants of a layout into {@link LayoutVariants}, reading all of them with a single
+ * {@link LayoutIdIndex} query. Which variants take part is decided by {@link LayoutResolveService}.
+ */
+public final class LayoutVariantResolver {
+
+    private LayoutVariantResolver() {
+
+    }
+
+    /**
+     * Merged IDs of every variant of a layout, cached by {@link LayoutResolveService}
+     */
+    @NotNull
+    public static LayoutVariants getVariants(@NotNull Project project, @Nullable Module module, @NotNull String layoutName) {
+        return LayoutResolveService.getInstance(project).getVariants(module, layoutName);
+    }
+
+    /**
+     * Merge the given variants, which are expected in {@link LayoutVariants#QUALIFIER_ORDER}
+     */
+    @NotNull
+    static LayoutVariants merge(@NotNull Project project, @NotNull String layoutName, @NotNull List<VirtualFile> files) {
+        // layouts being edited are read from LayoutIdModel, which is patched incrementally, instead of being re-indexed
+        List<VirtualFile> saved = new ArrayList<VirtualFile>(files.size());
+        for (VirtualFile file : files) {
+            if (!LayoutScanner.hasUnsavedChanges(file)) {
+                saved.add(file);
+            }
+        }
+
+        final Map<VirtualFile, List<LayoutEntry>> indexed = new HashMap<VirtualFile, List<LayoutEntry>>();
+        if (!saved.isEmpty() && !DumbService.isDumb(project)) {
+            FileBasedIndex.getInstance().processValues(LayoutIdIndex.NAME, layoutName, null,
+                    new FileBasedIndex.ValueProcessor<List<LayoutEntry>>() {
+                        @Override
+                        public boolean process(VirtualFile file, List<LayoutEntry> value) {
+                            indexed.put(file, value);
+                            return true;
+                        }
+                    }, GlobalSearchScope.filesScope(project, saved));
+        }
+
+        LayoutVariants variants = new LayoutVariants(layoutName);
+        for (VirtualFile file : files) {
+            List<LayoutEntry> entries = indexed.get(file);
+            if (entries == null) {
+                // indexes are not ready, the layout is not indexed or it is being edited
+                entries = LayoutScanner.scan(project, file);
+            }
+            variants.add(LayoutVariants.getQualifier(file), file, entries);
+        }
+        return variants;
+    }
+}
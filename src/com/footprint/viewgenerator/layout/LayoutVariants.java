@@ -0,0 +1,122 @@
+package com.footprint.viewgenerator.layout;
+
+import com.footprint.viewgenerator.index.LayoutEntry;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * All qualifier variants of one layout (layout/, layout-land/, layout-sw600dp/ ...) merged into the union of their
+ * entries. Entries keep the document order of the first variant declaring them, the default variant going first,
+ * and remember which variants declare them.
+ */
+public class LayoutVariants {
+    public static final String DEFAULT_QUALIFIER = "layout";
+
+    public final String name;
+    private final List<String> mQualifiers = new ArrayList<String>();
+    private final List<VirtualFile> mFiles = new ArrayList<VirtualFile>();
+    // merge key -> entry of the first variant declaring it
+    private final Map<String, LayoutEntry> mEntries = new LinkedHashMap<String, LayoutEntry>();
+    // merge key -> indexes of the variants declaring it
+    private final Map<String, BitSet> mPresence = new HashMap<String, BitSet>();
+
+    public LayoutVariants(@NotNull String name) {
+        this.name = name;
+    }
+
+    void add(@NotNull String qualifier, @NotNull VirtualFile file, @NotNull List<LayoutEntry> entries) {
+        int variant = mQualifiers.size();
+        mQualifiers.add(qualifier);
+        mFiles.add(file);
+
+        for (LayoutEntry entry : entries) {
+            String key = getMergeKey(entry);
+            if (!mEntries.containsKey(key)) {
+                mEntries.put(key, entry);
+                mPresence.put(key, new BitSet());
+            }
+            mPresence.get(key).set(variant);
+        }
+    }
+
+    public boolean isEmpty() {
+        return mFiles.isEmpty();
+    }
+
+    @NotNull
+    public Collection<LayoutEntry> getEntries() {
+        return mEntries.values();
+    }
+
+    @NotNull
+    public List<VirtualFile> getFiles() {
+        return mFiles;
+    }
+
+    @NotNull
+    public List<String> getQualifiers() {
+        return mQualifiers;
+    }
+
+    /**
+     * The layout/ variant if there is one, the first variant otherwise
+     */
+    @Nullable
+    public VirtualFile getDefaultFile() {
+        return mFiles.isEmpty() ? null : mFiles.get(0);
+    }
+
+    /**
+     * Variants declaring the entry
+     *
+     * @param entry
+     * @return null when every variant declares it
+     */
+    @Nullable
+    public List<String> getPartialQualifiers(@NotNull LayoutEntry entry) {
+        BitSet presence = mPresence.get(getMergeKey(entry));
+        if (presence == null || presence.cardinality() == mQualifiers.size()) {
+            return null;
+        }
+
+        List<String> qualifiers = new ArrayList<String>(presence.cardinality());
+        for (int i = presence.nextSetBit(0); i >= 0; i = presence.nextSetBit(i + 1)) {
+            qualifiers.add(mQualifiers.get(i));
+        }
+        return qualifiers;
+    }
+
+    /**
+     * Qualifier folder of a layout file, e.g. layout-land
+     */
+    @NotNull
+    public static String getQualifier(@NotNull VirtualFile file) {
+        VirtualFile parent = file.getParent();
+        return parent == null ? DEFAULT_QUALIFIER : parent.getName();
+    }
+
+    /**
+     * Order variants the way they are merged: the default variant first, then by qualifier
+     */
+    public static final Comparator<String> QUALIFIER_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String q1, String q2) {
+            boolean default1 = DEFAULT_QUALIFIER.equals(q1);
+            boolean default2 = DEFAULT_QUALIFIER.equals(q2);
+            if (default1 != default2) {
+                return default1 ? -1 : 1;
+            }
+            return q1.compareTo(q2);
+        }
+    };
+
+    private static String getMergeKey(LayoutEntry entry) {
+        if (entry.id != null) {
+            return entry.id.replace("@+", "@"); // @+id/x and @id/x are the same ID
+        }
+        return "@layout/" + entry.include;
+    }
+}
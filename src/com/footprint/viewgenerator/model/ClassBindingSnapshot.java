@@ -0,0 +1,144 @@
+package com.footprint.viewgenerator.model;
+
+import com.footprint.viewgenerator.common.BindingAnalyzer;
+import com.footprint.viewgenerator.common.Definitions;
+import com.footprint.viewgenerator.common.Utils;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Immutable view of what a class already binds: its fields (with the superclass chain), the findViewById calls and
+ * listeners of initView, the IDs dispatched by onClick and its imports.
+ * <p>
+ * Snapshots are cached per class and rebuilt when the class's file or any Java structure changes, so the dialog,
+ * the writer and inspections can share one without re-reading the class.
+ */
+public final class ClassBindingSnapshot {
+    private final long mModificationStamp;
+    private final Set<String> mFieldNames;
+    // ID -> field name, from initView
+    private final Map<String, String> mInitFieldNames;
+    // fields with a listener set in initView
+    private final Set<String> mClickViewNames;
+    // IDs dispatched in onClick
+    private final Set<String> mClickIds;
+    private final Set<String> mImports;
+    private final boolean mClickClass;
+
+    @NotNull
+    public static ClassBindingSnapshot of(@NotNull final PsiClass psiClass) {
+        return CachedValuesManager.getCachedValue(psiClass, new CachedValueProvider<ClassBindingSnapshot>() {
+            @Override
+            public Result<ClassBindingSnapshot> compute() {
+                return Result.create(new ClassBindingSnapshot(psiClass), psiClass.getContainingFile(),
+                        PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT);
+            }
+        });
+    }
+
+    private ClassBindingSnapshot(PsiClass psiClass) {
+        mModificationStamp = psiClass.getContainingFile().getModificationStamp();
+
+        Set<String> fieldNames = new HashSet<String>();
+        for (PsiField psiField : psiClass.getAllFields()) {
+            fieldNames.add(psiField.getName());
+        }
+        mFieldNames = Collections.unmodifiableSet(fieldNames);
+
+        Map<String, String> initFieldNames = new HashMap<String, String>();
+        Set<String> clickViewNames = new HashSet<String>();
+        parseInitView(psiClass, initFieldNames, clickViewNames);
+        mInitFieldNames = Collections.unmodifiableMap(initFieldNames);
+        mClickViewNames = Collections.unmodifiableSet(clickViewNames);
+        mClickIds = Collections.unmodifiableSet(parseOnClick(psiClass));
+
+        Set<String> imports = new HashSet<String>();
+        PsiFile file = psiClass.getContainingFile();
+        if (file instanceof PsiJavaFile && ((PsiJavaFile) file).getImportList() != null) {
+            for (PsiImportStatement statement : ((PsiJavaFile) file).getImportList().getImportStatements()) {
+                if (statement.getQualifiedName() != null) {
+                    imports.add(statement.getQualifiedName());
+                }
+            }
+        }
+        mImports = Collections.unmodifiableSet(imports);
+
+        mClickClass = extendsAny(psiClass.getImplementsList(), Collections.singleton(Definitions.ViewClickListener));
+    }
+
+    private static void parseInitView(PsiClass psiClass, Map<String, String> initFieldNames, Set<String> clickViewNames) {
+        PsiCodeBlock body = Utils.getSpecifiedMethodBody(psiClass, "initView");
+        if (body != null) {
+            BindingAnalyzer.analyzeInitView(body, initFieldNames, clickViewNames);
+        }
+    }
+
+    private static Set<String> parseOnClick(PsiClass psiClass) {
+        Set<String> clickIds = new HashSet<String>();
+        PsiCodeBlock body = Utils.getSpecifiedMethodBody(psiClass, "onClick");
+        if (body != null) {
+            BindingAnalyzer.analyzeOnClick(body, clickIds);
+        }
+        return clickIds;
+    }
+
+    private static boolean extendsAny(@Nullable PsiReferenceList list, Collection<String> classNames) {
+        if (list == null) {
+            return false;
+        }
+        for (PsiJavaCodeReferenceElement element : list.getReferenceElements()) {
+            if (classNames.contains(element.getQualifiedName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Modification stamp of the class's file when the snapshot was taken
+     */
+    public long getModificationStamp() {
+        return mModificationStamp;
+    }
+
+    public Set<String> getFieldNames() {
+        return mFieldNames;
+    }
+
+    public boolean hasField(String fieldName) {
+        return mFieldNames.contains(fieldName);
+    }
+
+    /**
+     * Name of the field initView assigns the view with the given ID to
+     *
+     * @param fullID e.g. R.id.title
+     * @return null if the ID is not initialized yet
+     */
+    @Nullable
+    public String getInitFieldName(String fullID) {
+        return mInitFieldNames.get(fullID);
+    }
+
+    public Set<String> getClickViewNames() {
+        return mClickViewNames;
+    }
+
+    public Set<String> getClickIds() {
+        return mClickIds;
+    }
+
+    public boolean isImported(String qualifiedName) {
+        return mImports.contains(qualifiedName);
+    }
+
+    public boolean isClickClass() {
+        return mClickClass;
+    }
+}
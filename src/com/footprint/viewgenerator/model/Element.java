@@ -1,8 +1,11 @@
 package com.footprint.viewgenerator.model;
 
 
-import com.footprint.viewgenerator.common.Utils;
+import com.footprint.viewgenerator.iface.FieldNamingStrategy;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,13 +20,18 @@ public class Element {
     public String name; // element name
     public String fieldName; // name of variable
     public boolean isValid = false;
-    public boolean needDeal = true;//是否需要自动处理
-    public boolean isClick = true;//是否需要添加监听
     public String typeName = "";//类型名称（不带包名）
-    public boolean isDeclared = false;//是否已经声明过
-    public boolean isInit = false;//是否已经初始化
+    public String layout;//声明该ID的布局文件（可能来自include）
+    public List<String> variants;//只在部分布局变体（layout-land等）中存在时，列出这些变体；null表示所有变体都有
 
-    public Element(String name, String id) {
+    //标志位存放在ElementTable中，加入之前暂存在这里
+    private ElementTable mTable;
+    private int mRow = -1;
+    private boolean mNeedDeal = true;
+    private boolean mClick = true;
+    private String mFullID;
+
+    public Element(String name, String id, FieldNamingStrategy naming, @Nullable String includedLayout) {
         // id
         final Matcher matcher = sIdPattern.matcher(id);
         if (matcher.find() && matcher.groupCount() > 0) {
@@ -34,16 +42,34 @@ public class Element {
         }
 
         // name
-        String[] packages = name.split("\\.");
-        if (packages.length > 1) {
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot >= 0) {
             this.nameFull = name;
-            this.name = packages[packages.length - 1];
+            this.name = name.substring(lastDot + 1);
         } else {
             this.nameFull = null;
             this.name = name;
         }
 
-        this.fieldName = getFieldName();
+        this.fieldName = naming.getFieldName(this.id, this.name, includedLayout);
+    }
+
+    /**
+     * A detached copy of the element, with its current flags
+     */
+    Element(Element other) {
+        this.id = other.id;
+        this.isAndroidNS = other.isAndroidNS;
+        this.nameFull = other.nameFull;
+        this.name = other.name;
+        this.fieldName = other.fieldName;
+        this.isValid = other.isValid;
+        this.typeName = other.typeName;
+        this.layout = other.layout;
+        this.variants = other.variants != null ? new ArrayList<String>(other.variants) : null;
+        this.mNeedDeal = other.isNeedDeal();
+        this.mClick = other.isClick();
+        this.mFullID = other.mFullID;
     }
 
     /**
@@ -52,42 +78,26 @@ public class Element {
      * @return
      */
     public String getFullID() {
-        StringBuilder fullID = new StringBuilder();
-        String rPrefix;
-
-        if (isAndroidNS) {
-            rPrefix = "android.R.id.";
-        } else {
-            rPrefix = "R.id.";
+        if (mFullID == null) {
+            mFullID = (isAndroidNS ? "android.R.id." : "R.id.") + id;
         }
-
-        fullID.append(rPrefix);
-        fullID.append(id);
-
-        return fullID.toString();
+        return mFullID;
     }
 
     /**
-     * Generate field name if it's not done yet
+     * Full ID of a raw android:id value
      *
-     * @return
+     * @param id e.g. @+id/title
+     * @return e.g. R.id.title, null if the value is not an ID
      */
-    private String getFieldName() {
-        String[] words = this.id.split("_");
-        StringBuilder sb = new StringBuilder();
-        sb.append(Utils.getPrefix());
-
-        for (int i = 0; i < words.length; i++) {
-            String[] idTokens = words[i].split("\\.");
-            char[] chars = idTokens[idTokens.length - 1].toCharArray();
-            if (i > 0 || !Utils.isEmptyString(Utils.getPrefix())) {
-                chars[0] = Character.toUpperCase(chars[0]);
-            }
-
-            sb.append(chars);
+    @Nullable
+    public static String toFullID(@Nullable String id) {
+        Matcher matcher = id != null ? sIdPattern.matcher(id) : null;
+        if (matcher == null || !matcher.find()) {
+            return null;
         }
-
-        return sb.toString();
+        String androidNS = matcher.group(1);
+        return (androidNS == null || androidNS.length() == 0 ? "R.id." : "android.R.id.") + matcher.group(2);
     }
 
     /**
@@ -102,7 +112,72 @@ public class Element {
         return isValid;
     }
 
+    void attach(ElementTable table, int row) {
+        mTable = table;
+        mRow = row;
+        table.set(ElementTable.NEED_DEAL, row, mNeedDeal);
+        table.set(ElementTable.CLICK, row, mClick);
+    }
+
+    private boolean getFlag(int flag) {
+        return mTable != null && mTable.get(flag, mRow);
+    }
+
+    private void setFlag(int flag, boolean value) {
+        if (mTable == null) {
+            throw new IllegalStateException("Element is not in a table yet");
+        }
+        mTable.set(flag, mRow, value);
+    }
+
+    public boolean isNeedDeal() {
+        return mTable != null ? getFlag(ElementTable.NEED_DEAL) : mNeedDeal;
+    }
+
+    public void setNeedDeal(boolean needDeal) {
+        if (mTable != null) {
+            setFlag(ElementTable.NEED_DEAL, needDeal);
+        } else {
+            mNeedDeal = needDeal;
+        }
+    }
+
+    public boolean isClick() {
+        return mTable != null ? getFlag(ElementTable.CLICK) : mClick;
+    }
+
+    public void setClick(boolean click) {
+        if (mTable != null) {
+            setFlag(ElementTable.CLICK, click);
+        } else {
+            mClick = click;
+        }
+    }
+
     public boolean isDeclared() {
-        return isDeclared;
+        return getFlag(ElementTable.DECLARED);
+    }
+
+    public void setDeclared(boolean declared) {
+        setFlag(ElementTable.DECLARED, declared);
+    }
+
+    public boolean isInit() {
+        return getFlag(ElementTable.INIT);
+    }
+
+    public void setInit(boolean init) {
+        setFlag(ElementTable.INIT, init);
+    }
+
+    /**
+     * Is the ID already dispatched in onClick?
+     */
+    public boolean isClickHandled() {
+        return getFlag(ElementTable.CLICK_HANDLED);
+    }
+
+    public void setClickHandled(boolean clickHandled) {
+        setFlag(ElementTable.CLICK_HANDLED, clickHandled);
     }
 }
@@ -0,0 +1,198 @@
+package com.footprint.viewgenerator.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * The elements of one generation, with their flags kept column-wise in {@link BitSet}s instead of per element.
+ * <p>
+ * The numbers of elements to inject and to listen to are kept up to date by the setters, so asking for them costs
+ * nothing; other filters are a few bit word operations on a scratch {@link BitSet}. Filtered views share the elements
+ * of the table instead of copying them. Tag names are interned per table, so thousands of TextViews share one string.
+ * <p>
+ * A table is not thread safe; hand a {@link #copy()} to other threads.
+ */
+public class ElementTable extends AbstractList<Element> implements RandomAccess {
+    // flags, as bit indices in mFlags
+    public static final int NEED_DEAL = 0;//是否需要自动处理
+    public static final int CLICK = 1;//是否需要添加监听
+    public static final int DECLARED = 2;//是否已经声明过
+    public static final int INIT = 3;//是否已经初始化
+    public static final int CLICK_HANDLED = 4;//onClick中已经处理该ID
+    private static final int FLAG_COUNT = 5;
+
+    private final Element[] mElements;
+    private final BitSet[] mFlags = new BitSet[FLAG_COUNT];
+    // reused by mask()
+    private final BitSet mScratch;
+    private int mInjectCount;
+    private int mClickCount;
+
+    public ElementTable(@NotNull List<Element> elements) {
+        mElements = elements.toArray(new Element[elements.size()]);
+        mScratch = new BitSet(mElements.length);
+        for (int flag = 0; flag < FLAG_COUNT; flag++) {
+            mFlags[flag] = new BitSet(mElements.length);
+        }
+
+        Map<String, String> names = new HashMap<String, String>();
+        for (int row = 0; row < mElements.length; row++) {
+            Element element = mElements[row];
+            element.name = intern(names, element.name);
+            element.nameFull = intern(names, element.nameFull);
+            element.attach(this, row);
+        }
+    }
+
+    @Override
+    public Element get(int index) {
+        return mElements[index];
+    }
+
+    @Override
+    public int size() {
+        return mElements.length;
+    }
+
+    public boolean get(int flag, int row) {
+        return mFlags[flag].get(row);
+    }
+
+    public void set(int flag, int row, boolean value) {
+        if (mFlags[flag].get(row) == value) {
+            return;
+        }
+        boolean inject = isInject(row);
+        boolean click = isClick(row);
+        mFlags[flag].set(row, value);
+        mInjectCount += (isInject(row) ? 1 : 0) - (inject ? 1 : 0);
+        mClickCount += (isClick(row) ? 1 : 0) - (click ? 1 : 0);
+    }
+
+    /**
+     * A copy of the elements and all their flags, e.g. for planning in the background while the dialog keeps
+     * editing this table
+     */
+    @NotNull
+    public ElementTable copy() {
+        List<Element> elements = new ArrayList<Element>(mElements.length);
+        for (Element element : mElements) {
+            elements.add(new Element(element));
+        }
+        ElementTable copy = new ElementTable(elements);
+        for (int flag = 0; flag < FLAG_COUNT; flag++) {
+            copy.mFlags[flag] = (BitSet) mFlags[flag].clone();
+        }
+        copy.mInjectCount = mInjectCount;
+        copy.mClickCount = mClickCount;
+        return copy;
+    }
+
+    /**
+     * Clear a flag of every element
+     */
+    public void clear(int flag) {
+        mFlags[flag].clear();
+        mInjectCount = count(new int[]{NEED_DEAL}, new int[]{DECLARED});
+        mClickCount = count(new int[]{NEED_DEAL, CLICK}, new int[]{CLICK_HANDLED});
+    }
+
+    /**
+     * Number of elements having all the required flags and none of the excluded ones
+     */
+    public int count(int[] required, int[] excluded) {
+        return mask(required, excluded).cardinality();
+    }
+
+    /**
+     * Elements having all the required flags and none of the excluded ones, in table order. The view is a snapshot
+     * of the flags when it is created.
+     */
+    @NotNull
+    public List<Element> view(int[] required, int[] excluded) {
+        final BitSet mask = mask(required, excluded);
+        final int[] rows = new int[mask.cardinality()];
+        for (int row = mask.nextSetBit(0), i = 0; row >= 0; row = mask.nextSetBit(row + 1)) {
+            rows[i++] = row;
+        }
+        return new View(rows);
+    }
+
+    /**
+     * Elements checked in the dialog
+     */
+    @NotNull
+    public List<Element> selected() {
+        return view(new int[]{NEED_DEAL}, new int[0]);
+    }
+
+    /**
+     * Checked elements whose field has to be declared
+     */
+    public int getInjectCount() {
+        return mInjectCount;
+    }
+
+    /**
+     * Checked elements whose ID has to be added to onClick
+     */
+    public int getClickCount() {
+        return mClickCount;
+    }
+
+    private boolean isInject(int row) {
+        return mFlags[NEED_DEAL].get(row) && !mFlags[DECLARED].get(row);
+    }
+
+    private boolean isClick(int row) {
+        return mFlags[NEED_DEAL].get(row) && mFlags[CLICK].get(row) && !mFlags[CLICK_HANDLED].get(row);
+    }
+
+    /**
+     * The rows having all the required flags and none of the excluded ones, in the scratch set; valid until the
+     * next call
+     */
+    private BitSet mask(int[] required, int[] excluded) {
+        BitSet mask = mScratch;
+        mask.clear();
+        mask.set(0, mElements.length);
+        for (int flag : required) {
+            mask.and(mFlags[flag]);
+        }
+        for (int flag : excluded) {
+            mask.andNot(mFlags[flag]);
+        }
+        return mask;
+    }
+
+    private static String intern(Map<String, String> pool, String value) {
+        if (value == null) {
+            return null;
+        }
+        String interned = pool.get(value);
+        if (interned == null) {
+            pool.put(value, value);
+            return value;
+        }
+        return interned;
+    }
+
+    private class View extends AbstractList<Element> implements RandomAccess {
+        private final int[] mRows;
+
+        View(int[] rows) {
+            mRows = rows;
+        }
+
+        @Override
+        public Element get(int index) {
+            return mElements[mRows[index]];
+        }
+
+        @Override
+        public int size() {
+            return mRows.length;
+        }
+    }
+}
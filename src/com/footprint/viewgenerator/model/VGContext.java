@@ -1,222 +1,116 @@
 package com.footprint.viewgenerator.model;
 
-import com.footprint.viewgenerator.common.Definitions;
 import com.footprint.viewgenerator.common.Utils;
+import com.footprint.viewgenerator.component.ComponentClassifier;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
-import com.intellij.psi.search.EverythingGlobalScope;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Set;
 
 /**
  * Created by liquanmin on 16/2/27.
+ * <p>
+ * PSI is only referenced through {@link SmartPsiElementPointer}s, so a context doesn't pin the trees of the class
+ * and the layout; its getters return null once the element is gone. Disposed with its generation session.
+ * <p>
+ * The snapshot kept here is the one the dialog shows. A plan reads its own snapshot through {@link #refresh}, and
+ * keeps it to itself, so the preview and the writer can plan at the same time without sharing any mutable state.
  */
-public class VGContext {
-    //ID->Element: 从Layout中获取
-    private HashMap<String, Element> elementsIdMap = new HashMap<String, Element>();
+public class VGContext implements Disposable {
+    //类中已有的绑定（变量、initView、onClick、import），按文件修改缓存
+    private ClassBindingSnapshot snapshot;
 
-    //ID->Name: 从initView中获取
-    private HashMap<String, String> elementsIdNameMap = new HashMap<String, String>();
+    //是否需要创建ViewHolder；对话框设置，后台生成读取
+    protected volatile boolean ifCreateViewHolder = false;
 
-    //已经声明的属性变量名字
-    private List<String> fieldNameList = new ArrayList<String>(8);
-
-    //已经在onClick方法中有Id的变量，等效于添加了监听的变量
-    private List<String> clickIdsList = new ArrayList<String>(8);
-
-    //所有添加监听的View属性名字到Statement的映射
-    private List<String> clickViewNameList = new ArrayList<String>(8);
-
-    //所有import的包.类名
-    protected List<String> importStrList = new ArrayList<String>();
-
-    protected PsiImportList importList;
-
-    //是否已经添加OnClickListener监听
-    protected boolean isClickClass = false;
-
-    //是否需要创建ViewHolder
-    protected boolean ifCreateViewHolder = false;
-
-    //是否是Adapter类
-    private boolean isAdapter = false;
-
-    private PsiClass activityClass;
-    private PsiClass fragmentClass;
-    private PsiClass supportFragmentClass;
-
-    private PsiClass mClass;
-    private PsiFile mFile;
-    private PsiFile mLayoutFile;
-    private Project mProject;
+    private final SmartPsiElementPointer<PsiClass> mClass;
+    private final SmartPsiElementPointer<PsiFile> mFile;
+    private final SmartPsiElementPointer<PsiFile> mLayoutFile;
+    private final Project mProject;
 
     public VGContext(Project mProject, PsiFile psiFile, PsiFile layoutFile, PsiClass mClass) {
-        this.mClass = mClass;
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(mProject);
+        this.mClass = pointerManager.createSmartPsiElementPointer(mClass);
         this.mProject = mProject;
-        this.mFile = psiFile;
-        this.mLayoutFile = layoutFile;
+        this.mFile = pointerManager.createSmartPsiElementPointer(psiFile);
+        this.mLayoutFile = pointerManager.createSmartPsiElementPointer(layoutFile);
     }
 
     /**
      * 预处理Element列表
      */
-    public void preDealWithElements(List<Element> mElements) {
-        //解析实例化变量
-        PsiMethod[] initViews = mClass.findMethodsByName("initView", false);
-        elementsIdNameMap.clear();
-        clickViewNameList.clear();
-        if (initViews.length > 0) {
-            PsiMethod method = initViews[0];
-            final PsiCodeBlock body = method.getBody();
-            if (body != null) {
-                PsiStatement[] statements = body.getStatements();
-                for (PsiStatement psiStatement : statements) {
-                    String statementAsString = psiStatement.getText();
-                    if (statementAsString.contains(Definitions.FindViewById)) {//声明语句
-                        statementAsString = Utils.replaceBlank(statementAsString);
-                        String fieldName = statementAsString.substring(0, statementAsString.indexOf("="));
-                        String id = statementAsString.substring(statementAsString.indexOf("(R.id.") + 1, statementAsString.indexOf(");"));
-                        elementsIdNameMap.put(id, fieldName);
-                    }
-
-                    if (statementAsString.contains(Definitions.SetOnClickListener)) {//监听语句
-                        statementAsString = Utils.replaceBlank(statementAsString);
-                        String fieldName = statementAsString.substring(0, statementAsString.indexOf(Definitions.SetOnClickListener));
-                        clickViewNameList.add(fieldName);
-                    }
-                }
-            }
-        }
-
-        //解析click变量
-        PsiMethod[] onClicks = mClass.findMethodsByName("onClick", false);
-        clickIdsList.clear();
-        if (onClicks.length > 0) {
-            PsiMethod method = onClicks[0];
-            final PsiCodeBlock body = method.getBody();
-            if (body != null) {
-                PsiStatement[] statements = body.getStatements();
-                for (PsiStatement psiStatement : statements) {
-//                    if (psiStatement instanceof PsiIfStatement) {
-//                        String ifText = Utils.replaceBlank(psiStatement.getText());
-//                        StringBuilder stringBuilder = new StringBuilder();
-//                        for (Element element : mElements) {
-//                            Utils.clearStringBuilder(stringBuilder);
-//                            stringBuilder.append("if(view.getId()==")
-//                                    .append(element.getFullID())
-//                                    .append(")");
-//
-//                            if (ifText.contains(stringBuilder.toString())) {
-//                                clickIdsList.add(element.getFullID());
-//                                element.isClick = true;
-//                            }
-//                        }
-//                        break;
-//                    }
-                    //TODO SONVO Begin
-                    if (psiStatement instanceof PsiSwitchStatement) {
-                        String ifText = Utils.replaceBlank(psiStatement.getText());
-                        StringBuilder stringBuilder = new StringBuilder();
-                        for (Element element : mElements) {
-                            Utils.clearStringBuilder(stringBuilder);
-                            stringBuilder.append(element.getFullID());
-
-                            if (ifText.contains(stringBuilder.toString())) {
-                                clickIdsList.add(element.getFullID());
-                                element.isClick = true;
-                            }
-                        }
-                        break;
-                    }
-                    //TODO SONVO End
-                }
-            }
-        }
-
-        //获取声明的所有变量名字
-        fieldNameList.clear();
-        for (PsiField psiField : mClass.getAllFields()) {
-            fieldNameList.add(psiField.getName());
-        }
+    public void preDealWithElements(ElementTable mElements) {
+        preDealWithElements(mElements, snapshot);
+    }
 
-        elementsIdMap.clear();
+    private static void preDealWithElements(ElementTable mElements, ClassBindingSnapshot snapshot) {
         for (Element element : mElements) {
-            elementsIdMap.put(element.getFullID(), element);
             //ID映射到的变量名称换成代码中的
-            if (elementsIdNameMap.containsKey(element.getFullID())) {
-                element.fieldName = elementsIdNameMap.get(element.getFullID());//这个名字可能被修改过，以修改过的为标准
-                element.isInit = true;
+            String fieldName = snapshot.getInitFieldName(element.getFullID());
+            if (fieldName != null) {
+                element.fieldName = fieldName;//这个名字可能被修改过，以修改过的为标准
+                element.setInit(true);
             }
 
-            //有同样名字的变量就认为是声明过的
-            if (fieldNameList.contains(element.fieldName)) {
-                element.isDeclared = true;
+            //已经在onClick中处理
+            if (snapshot.getClickIds().contains(element.getFullID())) {
+                element.setClick(true);
+                element.setClickHandled(true);
             }
-        }
-    }
 
-    public void parseClass() {
-        PsiReferenceList extendsList = mClass.getExtendsList();
-        if (extendsList != null) {
-            for (PsiJavaCodeReferenceElement element : extendsList.getReferenceElements()) {
-                if (Definitions.adapters.contains(element.getQualifiedName())) {
-                    isAdapter = true;
-                    ifCreateViewHolder = true;
-                    break;
-                }
-            }
-        }
-
-        PsiReferenceList implementsList = mClass.getImplementsList();
-        if (implementsList != null) {
-            for (PsiJavaCodeReferenceElement element : implementsList.getReferenceElements()) {
-                if (Definitions.ViewClickListener.equals(element.getQualifiedName())) {
-                    isClickClass = true;
-                    break;
-                }
+            //有同样名字的变量就认为是声明过的
+            if (snapshot.hasField(element.fieldName)) {
+                element.setDeclared(true);
             }
         }
-
-        importList = ((PsiJavaFile) mClass.getContainingFile()).getImportList();
-        PsiImportStatement[] importStatements = importList.getImportStatements();
-        importStrList.clear();
-        StringBuilder stringBuilder = new StringBuilder();
-        for (PsiImportStatement statement : importStatements) {
-            stringBuilder.delete(0, stringBuilder.length());
-            stringBuilder.append(statement.getText());
-            stringBuilder.delete(0, Definitions.IMPORT.length());
-            stringBuilder.delete(stringBuilder.length() - 1, stringBuilder.length());
-            importStrList.add(stringBuilder.toString());
-        }
-
-        activityClass = JavaPsiFacade.getInstance(mProject).findClass(
-                "android.app.Activity", new EverythingGlobalScope(mProject));
-        fragmentClass = JavaPsiFacade.getInstance(mProject).findClass(
-                "android.app.Fragment", new EverythingGlobalScope(mProject));
-        supportFragmentClass = JavaPsiFacade.getInstance(mProject).findClass(
-                "android.support.v4.app.Fragment", new EverythingGlobalScope(mProject));
     }
 
-    public HashMap<String, Element> getElementsIdMap() {
-        return elementsIdMap;
+    /**
+     * @return false if the class is gone, the context is stale then
+     */
+    public boolean parseClass() {
+        PsiClass psiClass = getmClass();
+        if (psiClass == null) {
+            return false;
+        }
+        snapshot = ClassBindingSnapshot.of(psiClass);
+        ifCreateViewHolder = isAdapter();
+        return true;
     }
 
-    public HashMap<String, String> getElementsIdNameMap() {
-        return elementsIdNameMap;
+    /**
+     * 类在打开对话框之后可能被修改过：重新解析类，并重新计算Element的状态（勾选不变）。
+     * The new snapshot is returned to the caller only, the one of the dialog is kept.
+     *
+     * @return null if the class is gone, the context is stale then and the elements are left as they are
+     */
+    @Nullable
+    public ClassBindingSnapshot refresh(ElementTable mElements) {
+        PsiClass psiClass = getmClass();
+        if (psiClass == null) {
+            return null;
+        }
+        ClassBindingSnapshot current = ClassBindingSnapshot.of(psiClass);
+        mElements.clear(ElementTable.DECLARED);
+        mElements.clear(ElementTable.INIT);
+        mElements.clear(ElementTable.CLICK_HANDLED);
+        preDealWithElements(mElements, current);
+        return current;
     }
 
-    public List<String> getFieldNameList() {
-        return fieldNameList;
+    public Set<String> getFieldNames() {
+        return snapshot.getFieldNames();
     }
 
-    public List<String> getClickIdsList() {
-        return clickIdsList;
+    public Set<String> getClickIds() {
+        return snapshot.getClickIds();
     }
 
     public boolean isAdapter() {
-        return isAdapter;
+        PsiClass psiClass = getmClass();
+        return psiClass != null && ComponentClassifier.getInstance(mProject).isAdapter(psiClass);
     }
 
     public boolean ifCreateViewHolder() {
@@ -227,32 +121,26 @@ public class VGContext {
         this.ifCreateViewHolder = ifCreateViewHolder;
     }
 
-    public List<String> getImportStrList() {
-        return importStrList;
-    }
-
+    @Nullable
     public PsiImportList getImportList() {
-        return importList;
-    }
-
-    public List<String> getClickViewNameList() {
-        return clickViewNameList;
+        PsiClass psiClass = getmClass();
+        PsiFile file = psiClass != null ? psiClass.getContainingFile() : null;
+        return file instanceof PsiJavaFile ? ((PsiJavaFile) file).getImportList() : null;
     }
 
+    @Nullable
     public PsiFile getmFile() {
-        return mFile;
+        return mFile.getElement();
     }
 
+    @Nullable
     public PsiFile getmLayoutFile() {
-        return mLayoutFile;
-    }
-
-    public boolean isClickClass() {
-        return isClickClass;
+        return mLayoutFile.getElement();
     }
 
+    @Nullable
     public PsiClass getmClass() {
-        return mClass;
+        return mClass.getElement();
     }
 
     public Project getProject() {
@@ -260,14 +148,26 @@ public class VGContext {
     }
 
     public boolean isActivity() {
-        return activityClass != null && mClass.isInheritor(activityClass, true);
+        PsiClass psiClass = getmClass();
+        return psiClass != null && ComponentClassifier.getInstance(mProject).isActivity(psiClass);
     }
 
     public boolean isFragment() {
-        return (fragmentClass != null && mClass.isInheritor(fragmentClass, true)) || (supportFragmentClass != null && mClass.isInheritor(supportFragmentClass, true));
+        PsiClass psiClass = getmClass();
+        return psiClass != null && ComponentClassifier.getInstance(mProject).isFragment(psiClass);
     }
 
     public boolean containsMethod(String methodName) {
-        return Utils.ifClassContainsMethod(mClass, methodName);
+        PsiClass psiClass = getmClass();
+        return psiClass != null && Utils.ifClassContainsMethod(psiClass, methodName);
+    }
+
+    @Override
+    public void dispose() {
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(mProject);
+        pointerManager.removePointer(mClass);
+        pointerManager.removePointer(mFile);
+        pointerManager.removePointer(mLayoutFile);
+        snapshot = null;
     }
 }
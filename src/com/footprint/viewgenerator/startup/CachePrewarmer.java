@@ -0,0 +1,165 @@
+package com.footprint.viewgenerator.startup;
+
+import com.footprint.viewgenerator.Settings.Settings;
+import com.footprint.viewgenerator.action.GenerateApplicability;
+import com.footprint.viewgenerator.common.Utils;
+import com.footprint.viewgenerator.component.ComponentClassifier;
+import com.footprint.viewgenerator.component.ComponentKind;
+import com.footprint.viewgenerator.component.ViewTypeResolver;
+import com.footprint.viewgenerator.layout.LayoutIdModel;
+import com.footprint.viewgenerator.layout.LayoutReferenceResolver;
+import com.footprint.viewgenerator.layout.LayoutResolveService;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Warms the caches of the plugin once the project is opened and indexed, so the first generation doesn't pay for
+ * them: the hierarchies of the component base classes, the view classes of common widgets, and for the files open
+ * in editors, the classification and inflated layouts of their classes and the IDs of their layouts.
+ * <p>
+ * Runs in a cancellable background task, one short read action per item which gives way to write actions, and
+ * stops when indexing starts again. At most {@link Settings#PREWARM_LIMIT} open files are warmed; 0 disables it.
+ */
+public class CachePrewarmer implements StartupActivity, DumbAware {
+    private static final Logger LOG = Logger.getInstance(CachePrewarmer.class);
+    public static final int DEFAULT_LIMIT = 20;
+    // tags of nearly every layout
+    private static final String[] COMMON_VIEWS = {"View", "TextView", "ImageView", "Button", "ImageButton", "EditText",
+            "CheckBox", "ProgressBar", "LinearLayout", "RelativeLayout", "FrameLayout", "ScrollView", "ListView", "WebView"};
+
+    public static int getLimit() {
+        return PropertiesComponent.getInstance().getInt(Settings.PREWARM_LIMIT, DEFAULT_LIMIT);
+    }
+
+    @Override
+    public void runActivity(@NotNull final Project project) {
+        final int limit = getLimit();
+        if (limit <= 0 || ApplicationManager.getApplication().isUnitTestMode()) {
+            return;
+        }
+
+        DumbService.getInstance(project).runWhenSmart(new Runnable() {
+            @Override
+            public void run() {
+                if (project.isDisposed()) {
+                    return;
+                }
+                ProgressManager.getInstance().run(new Task.Backgroundable(project, "Warming up view generator caches", true) {
+                    @Override
+                    public void run(@NotNull ProgressIndicator indicator) {
+                        prewarm(project, indicator, limit);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void prewarm(final Project project, ProgressIndicator indicator, int limit) {
+        final ComponentClassifier classifier = ComponentClassifier.getInstance(project);
+        for (final ComponentKind kind : ComponentKind.values()) {
+            if (!read(project, indicator, new Runnable() {
+                @Override
+                public void run() {
+                    for (String baseClass : ComponentClassifier.getBaseClasses(kind)) {
+                        PsiClass psiClass = JavaPsiFacade.getInstance(project).findClass(baseClass,
+                                GlobalSearchScope.allScope(project));
+                        if (psiClass != null) {
+                            classifier.getSupertypeNames(psiClass);
+                        }
+                    }
+                }
+            })) {
+                return;
+            }
+        }
+
+        final ViewTypeResolver viewTypes = ViewTypeResolver.getInstance(project);
+        if (!read(project, indicator, new Runnable() {
+            @Override
+            public void run() {
+                for (String tagName : COMMON_VIEWS) {
+                    viewTypes.resolve(tagName);
+                }
+            }
+        })) {
+            return;
+        }
+
+        VirtualFile[] openFiles = FileEditorManager.getInstance(project).getOpenFiles();
+        for (int i = 0; i < openFiles.length && i < limit; i++) {
+            final VirtualFile file = openFiles[i];
+            indicator.setText2(file.getName());
+            if (!read(project, indicator, new Runnable() {
+                @Override
+                public void run() {
+                    prewarmFile(project, file);
+                }
+            })) {
+                return;
+            }
+        }
+    }
+
+    private static void prewarmFile(Project project, VirtualFile file) {
+        PsiFile psiFile = file.isValid() ? PsiManager.getInstance(project).findFile(file) : null;
+        if (psiFile == null) {
+            return;
+        }
+
+        Module module = ModuleUtil.findModuleForPsiElement(psiFile);
+        LayoutResolveService layouts = LayoutResolveService.getInstance(project);
+        if (Utils.isLayoutFile(file)) {
+            LayoutIdModel.getInstance(project).getEntries(psiFile);
+            layouts.getVariants(module, file.getNameWithoutExtension());
+            return;
+        }
+
+        if (!(psiFile instanceof PsiJavaFile)) {
+            return;
+        }
+        for (PsiClass psiClass : ((PsiJavaFile) psiFile).getClasses()) {
+            GenerateApplicability.compute(psiClass); // classifies the class and finds its layouts
+            for (String layoutName : LayoutReferenceResolver.getInflatedLayouts(psiClass)) {
+                layouts.getVariants(module, layoutName);
+            }
+        }
+    }
+
+    /**
+     * Run the work in a read action which is cancelled by write actions
+     *
+     * @return false when prewarming has to stop
+     */
+    private static boolean read(Project project, ProgressIndicator indicator, Runnable work) {
+        indicator.checkCanceled();
+        if (project.isDisposed() || DumbService.isDumb(project)) {
+            return false;
+        }
+        try {
+            // a write action cancels the item; it is only skipped, the caches are filled on demand anyway
+            ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(work, new SensitiveProgressWrapper(indicator));
+            return true;
+        } catch (IndexNotReadyException e) {
+            LOG.debug("Indexing started again, prewarming stopped", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.footprint.viewgenerator.startup;
+
+import com.footprint.viewgenerator.action.StaleBindingTracker;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Services are created on first use, but {@link StaleBindingTracker} has to listen to layout saves from the start
+ */
+public class StaleBindingStartup implements StartupActivity, DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        StaleBindingTracker.getInstance(project);
+    }
+}
@@ -0,0 +1,225 @@
+package com.footprint.viewgenerator.common;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.*;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+/**
+ * Replays planned edits on a class and compares the reformatted result.
+ */
+public class ClassRewriterTest extends LightCodeInsightFixtureTestCase {
+
+    public void testAppendToBodyKeepsClosingBrace() {
+        PsiClass psiClass = configure("class A {\n"
+                + "    void f() {\n"
+                + "        a();\n"
+                + "    }\n"
+                + "    void a() {}\n"
+                + "    void b() {}\n"
+                + "}");
+        ClassRewriter rewriter = new ClassRewriter(psiClass);
+        PsiCodeBlock body = getBody(psiClass, "f");
+        rewriter.insertBefore(body, null, "b();");
+        apply(rewriter);
+        // no blank line before the brace
+        assertTrue(getText().contains("    void f() {\n"
+                + "        a();\n"
+                + "        b();\n"
+                + "    }\n"));
+    }
+
+    public void testInsertAroundAnchorsAndReplace() {
+        PsiClass psiClass = configure("class A {\n"
+                + "    void f() {\n"
+                + "        a();\n"
+                + "        b();\n"
+                + "    }\n"
+                + "    void a() {}\n"
+                + "    void b() {}\n"
+                + "    void c() {}\n"
+                + "}");
+        ClassRewriter rewriter = new ClassRewriter(psiClass);
+        PsiCodeBlock body = getBody(psiClass, "f");
+        PsiStatement[] statements = body.getStatements();
+        rewriter.insertAfter(body, null, "c();");
+        rewriter.insertAfter(body, statements[0], "c();");
+        rewriter.replace(body, statements[1], "a();");
+        apply(rewriter);
+        assertTrue(getText().contains("    void f() {\n"
+                + "        c();\n"
+                + "        a();\n"
+                + "        c();\n"
+                + "        a();\n"
+                + "    }\n"));
+    }
+
+    public void testAddFieldsMethodsAndImports() {
+        PsiClass psiClass = configure("package p;\n"
+                + "\n"
+                + "import java.util.List;\n"
+                + "\n"
+                + "class A {\n"
+                + "    private List<String> mNames;\n"
+                + "}");
+        ClassRewriter rewriter = new ClassRewriter(psiClass);
+        rewriter.addImport("java.util.Map");
+        rewriter.addField("private Map<String, String> mMap;");
+        rewriter.addField("private int mCount;");
+        rewriter.addMethod("void f() {\n}");
+        apply(rewriter);
+        myFixture.checkResult("package p;\n"
+                + "\n"
+                + "import java.util.List;\n"
+                + "import java.util.Map;\n"
+                + "\n"
+                + "class A {\n"
+                + "    private List<String> mNames;\n"
+                + "    private Map<String, String> mMap;\n"
+                + "    private int mCount;\n"
+                + "\n"
+                + "    void f() {\n"
+                + "    }\n"
+                + "}");
+    }
+
+    public void testAddCasesToSwitch() {
+        PsiClass psiClass = configure("class A {\n"
+                + "    void f(int id) {\n"
+                + "        switch (id) {\n"
+                + "            case 1:\n"
+                + "                // first\n"
+                + "                break;\n"
+                + "        }\n"
+                + "    }\n"
+                + "}");
+        ClassRewriter rewriter = new ClassRewriter(psiClass);
+        PsiSwitchStatement statement = (PsiSwitchStatement) getBody(psiClass, "f").getStatements()[0];
+        rewriter.addCases(statement, "case 2:\n\nbreak;\n");
+        apply(rewriter);
+        assertTrue(getText().contains("            case 1:\n"
+                + "                // first\n"
+                + "                break;\n"
+                + "            case 2:\n"));
+    }
+
+    public void testAddElse() {
+        PsiClass psiClass = configure("class A {\n"
+                + "    void f(int id) {\n"
+                + "        if (id == 1) {\n"
+                + "            // first\n"
+                + "        }\n"
+                + "    }\n"
+                + "}");
+        ClassRewriter rewriter = new ClassRewriter(psiClass);
+        PsiIfStatement statement = (PsiIfStatement) getBody(psiClass, "f").getStatements()[0];
+        rewriter.addElse(statement, "if (id == 2) {\n\n}");
+        apply(rewriter);
+        assertTrue(getText().contains("        if (id == 1) {\n"
+                + "            // first\n"
+                + "        } else if (id == 2) {\n"));
+    }
+
+    public void testInsertElseIfMovesFinalElse() {
+        PsiClass psiClass = configure("class A {\n"
+                + "    void f(int id) {\n"
+                + "        if (id == 1) {\n"
+                + "        } else {\n"
+                + "            /* untouched */ f(  id );\n"
+                + "        }\n"
+                + "    }\n"
+                + "}");
+        final ClassRewriter rewriter = new ClassRewriter(psiClass);
+        PsiIfStatement statement = (PsiIfStatement) getBody(psiClass, "f").getStatements()[0];
+        rewriter.insertElseIf(statement, "if (id == 2) {\n\n} else if (id == 3) {\n\n}");
+        rewriter.prepare();
+        WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+            @Override
+            public void run() {
+                rewriter.apply();
+            }
+        });
+        // the final else is moved as it is, not reformatted, and stays last
+        String text = getText();
+        int untouched = text.indexOf("/* untouched */ f(  id );");
+        assertTrue(untouched > 0);
+        assertTrue(text.indexOf("id == 2") < text.indexOf("id == 3"));
+        assertTrue(text.indexOf("id == 3") < untouched);
+    }
+
+    public void testInsertElseIfNeedsElse() {
+        PsiClass psiClass = configure("class A {\n"
+                + "    void f(int id) {\n"
+                + "        if (id == 1) {\n"
+                + "        }\n"
+                + "    }\n"
+                + "}");
+        PsiIfStatement statement = (PsiIfStatement) getBody(psiClass, "f").getStatements()[0];
+        try {
+            new ClassRewriter(psiClass).insertElseIf(statement, "if (id == 2) {\n}");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testInPlaceEditInRebuiltBodyFails() {
+        PsiClass psiClass = configure("class A {\n"
+                + "    void f(int id) {\n"
+                + "        switch (id) {\n"
+                + "        }\n"
+                + "    }\n"
+                + "}");
+        ClassRewriter rewriter = new ClassRewriter(psiClass);
+        PsiCodeBlock body = getBody(psiClass, "f");
+        rewriter.addCases((PsiSwitchStatement) body.getStatements()[0], "case 1:\nbreak;\n");
+        rewriter.insertBefore(body, null, "f(0);");
+        try {
+            rewriter.prepare();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testOutdatedAfterEdit() {
+        final PsiClass psiClass = configure("class A {\n"
+                + "}");
+        ClassRewriter rewriter = new ClassRewriter(psiClass);
+        rewriter.addField("int mCount;");
+        rewriter.prepare();
+        assertTrue(rewriter.isUpToDate());
+        WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+            @Override
+            public void run() {
+                psiClass.add(JavaPsiFacade.getElementFactory(getProject()).createField("mName", PsiType.INT));
+            }
+        });
+        assertFalse(rewriter.isUpToDate());
+    }
+
+    private PsiClass configure(String text) {
+        PsiJavaFile file = (PsiJavaFile) myFixture.configureByText("A.java", text);
+        return file.getClasses()[0];
+    }
+
+    private static PsiCodeBlock getBody(PsiClass psiClass, String methodName) {
+        PsiCodeBlock body = psiClass.findMethodsByName(methodName, false)[0].getBody();
+        assertNotNull(body);
+        return body;
+    }
+
+    private void apply(final ClassRewriter rewriter) {
+        rewriter.prepare();
+        assertTrue(rewriter.isUpToDate());
+        WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+            @Override
+            public void run() {
+                rewriter.apply();
+                CodeStyleManager.getInstance(getProject()).reformat(myFixture.getFile());
+            }
+        });
+    }
+
+    private String getText() {
+        return myFixture.getFile().getText();
+    }
+}
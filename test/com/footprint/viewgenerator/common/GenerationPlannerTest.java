@@ -0,0 +1,203 @@
+package com.footprint.viewgenerator.common;
+
+import com.footprint.viewgenerator.iface.FieldNamingStrategy;
+import com.footprint.viewgenerator.model.Element;
+import com.footprint.viewgenerator.model.ElementTable;
+import com.footprint.viewgenerator.model.VGContext;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans generations for an activity against stubs of the Android classes, and replays the plans.
+ */
+public class GenerationPlannerTest extends LightCodeInsightFixtureTestCase {
+    private static final String HEADER = "package com.example;\n"
+            + "\n"
+            + "import android.app.Activity;\n"
+            + "import android.os.Bundle;\n"
+            + "import android.view.View;\n"
+            + "import android.widget.TextView;\n"
+            + "\n"
+            + "public class MainActivity extends Activity implements View.OnClickListener {\n";
+
+    private VGContext mContext;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addClass("package android.os; public class Bundle {}");
+        myFixture.addClass("package android.view; public class View {\n"
+                + "    public interface OnClickListener { void onClick(View v); }\n"
+                + "    public int getId() { return 0; }\n"
+                + "    public void setOnClickListener(OnClickListener l) {}\n"
+                + "}");
+        myFixture.addClass("package android.widget; public class TextView extends android.view.View {}");
+        myFixture.addClass("package android.app; public class Activity {\n"
+                + "    protected void onCreate(android.os.Bundle state) {}\n"
+                + "    public void setContentView(int layout) {}\n"
+                + "    public android.view.View findViewById(int id) { return null; }\n"
+                + "}");
+        myFixture.addClass("package com.example; public final class R {\n"
+                + "    public static final class id { public static final int title = 1; public static final int ok = 2; }\n"
+                + "    public static final class layout { public static final int main = 3; }\n"
+                + "}");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            if (mContext != null) {
+                mContext.dispose();
+            }
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testBoundClassHasEmptyPlan() {
+        ElementTable elements = configure(HEADER
+                + "    private TextView mTitle;\n"
+                + "    private TextView mOk;\n"
+                + "\n"
+                + "    @Override\n"
+                + "    protected void onCreate(Bundle state) {\n"
+                + "        super.onCreate(state);\n"
+                + "        super.setContentView(R.layout.main);\n"
+                + "        initView();\n"
+                + "    }\n"
+                + "\n"
+                + "    private void initView() {\n"
+                + "        mTitle = (TextView) findViewById(R.id.title);\n"
+                + "        mTitle.setOnClickListener(this);\n"
+                + "        mOk = (TextView) findViewById(R.id.ok);\n"
+                + "        mOk.setOnClickListener(this);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public void onClick(View v) {\n"
+                + "        switch (v.getId()) {\n"
+                + "            case R.id.title:\n"
+                + "                break;\n"
+                + "            case R.id.ok:\n"
+                + "                break;\n"
+                + "        }\n"
+                + "    }\n"
+                + "}");
+        GenerationPlan plan = new GenerationPlanner(mContext, elements).plan();
+        assertTrue(plan.getText(), plan.isEmpty());
+    }
+
+    public void testMissingIdIsAddedToSwitch() {
+        ElementTable elements = configure(HEADER
+                + "    private TextView mTitle;\n"
+                + "\n"
+                + "    @Override\n"
+                + "    protected void onCreate(Bundle state) {\n"
+                + "        super.onCreate(state);\n"
+                + "        super.setContentView(R.layout.main);\n"
+                + "        initView();\n"
+                + "    }\n"
+                + "\n"
+                + "    private void initView() {\n"
+                + "        mTitle = (TextView) findViewById(R.id.title);\n"
+                + "        mTitle.setOnClickListener(this);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public void onClick(View v) {\n"
+                + "        switch (v.getId()) {\n"
+                + "            case R.id.title:\n"
+                + "                break;\n"
+                + "        }\n"
+                + "    }\n"
+                + "}");
+        GenerationPlan plan = new GenerationPlanner(mContext, elements).plan();
+        assertEmpty(plan.getProblems());
+        assertContainsElements(plan.getChanges(),
+                new GenerationPlan.Change(GenerationPlan.Kind.FIELD, "MainActivity", null, "private TextView mOk;"),
+                new GenerationPlan.Change(GenerationPlan.Kind.INSERT, "MainActivity", "onClick", "case R.id.ok:\n\nbreak;\n"));
+
+        apply(plan);
+        String text = myFixture.getFile().getText();
+        assertEquals(text.indexOf("case R.id.title:"), text.lastIndexOf("case R.id.title:"));
+        assertTrue(text, text.contains("case R.id.ok:"));
+        assertTrue(text, text.contains("mOk = (TextView) findViewById(R.id.ok);"));
+    }
+
+    public void testMissingIdGoesBeforeFinalElse() {
+        ElementTable elements = configure(HEADER
+                + "    private TextView mTitle;\n"
+                + "\n"
+                + "    @Override\n"
+                + "    protected void onCreate(Bundle state) {\n"
+                + "        super.onCreate(state);\n"
+                + "        super.setContentView(R.layout.main);\n"
+                + "        initView();\n"
+                + "    }\n"
+                + "\n"
+                + "    private void initView() {\n"
+                + "        mTitle = (TextView) findViewById(R.id.title);\n"
+                + "        mTitle.setOnClickListener(this);\n"
+                + "    }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public void onClick(View v) {\n"
+                + "        if (v.getId() == R.id.title) {\n"
+                + "        } else {\n"
+                + "            // unknown id\n"
+                + "        }\n"
+                + "    }\n"
+                + "}");
+        apply(new GenerationPlanner(mContext, elements).plan());
+        String text = myFixture.getFile().getText();
+        int ok = text.indexOf("v.getId() == R.id.ok");
+        assertTrue(text, ok > text.indexOf("v.getId() == R.id.title"));
+        assertTrue(text, ok < text.indexOf("// unknown id"));
+    }
+
+    public void testDeletedClassIsReported() {
+        ElementTable elements = configure(HEADER + "}");
+        WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+            @Override
+            public void run() {
+                mContext.getmClass().delete();
+            }
+        });
+        GenerationPlan plan = new GenerationPlanner(mContext, elements).plan();
+        assertTrue(plan.isEmpty());
+        assertEquals(1, plan.getProblems().size());
+    }
+
+    private ElementTable configure(String text) {
+        PsiFile layout = myFixture.addFileToProject("res/layout/main.xml", "<LinearLayout/>");
+        PsiJavaFile file = (PsiJavaFile) myFixture.configureByText("MainActivity.java", text);
+        mContext = new VGContext(getProject(), file, layout, file.getClasses()[0]);
+
+        List<Element> elements = new ArrayList<Element>();
+        FieldNamingStrategy naming = FieldNamingStrategies.prefixed("m");
+        elements.add(new Element("TextView", "@+id/title", naming, null));
+        elements.add(new Element("TextView", "@+id/ok", naming, null));
+        ElementTable table = new ElementTable(elements);
+        assertTrue(mContext.parseClass());
+        mContext.preDealWithElements(table);
+        return table;
+    }
+
+    private void apply(final GenerationPlan plan) {
+        plan.prepare();
+        assertTrue(plan.isUpToDate());
+        WriteCommandAction.runWriteCommandAction(getProject(), new Runnable() {
+            @Override
+            public void run() {
+                plan.apply();
+                CodeStyleManager.getInstance(getProject()).reformat(myFixture.getFile());
+            }
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.footprint.viewgenerator.common;
+
+/**
+ * Compares what is left of {@link TextScanner} with the split based helpers it replaced, on the IDs and include
+ * references of a large layout: field naming against split + capitalize, and {@link Utils#getLayoutName} against
+ * split on '/'. The statement text helpers are not compared, the bindings are read from the PSI now, see
+ * {@link BindingAnalyzer}. Not a test; run its main method, JMH isn't part of the plugin's test setup.
+ */
+public class TextScannerBenchmark {
+    private static final int IDS = 2000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    private interface Case {
+        long run(String[] input);
+    }
+
+    public static void main(String[] args) {
+        String[] ids = new String[IDS];
+        String[] layouts = new String[IDS];
+        for (int i = 0; i < IDS; i++) {
+            ids[i] = "item_" + (i % 7 == 0 ? "header_" : "") + "title_text_" + i;
+            layouts[i] = "@layout/item_row_" + i;
+        }
+
+        compare("field name", ids, new Case() {
+            @Override
+            public long run(String[] input) {
+                long length = 0;
+                for (String id : input) {
+                    StringBuilder name = new StringBuilder("m");
+                    for (String word : id.split("_")) {
+                        name.append(StringUtils.capitalize(word));
+                    }
+                    length += name.toString().length();
+                }
+                return length;
+            }
+        }, new Case() {
+            @Override
+            public long run(String[] input) {
+                long length = 0;
+                for (String id : input) {
+                    length += TextScanner.appendSnakeAsCamel(id, true, new StringBuilder("m")).toString().length();
+                }
+                return length;
+            }
+        });
+
+        compare("layout name", layouts, new Case() {
+            @Override
+            public long run(String[] input) {
+                long length = 0;
+                for (String layout : input) {
+                    if (layout.startsWith("@") && layout.contains("/")) {
+                        String[] parts = layout.split("/");
+                        length += parts.length == 2 ? parts[1].length() : 0;
+                    }
+                }
+                return length;
+            }
+        }, new Case() {
+            @Override
+            public long run(String[] input) {
+                long length = 0;
+                for (String layout : input) {
+                    String name = Utils.getLayoutName(layout);
+                    length += name != null ? name.length() : 0;
+                }
+                return length;
+            }
+        });
+    }
+
+    private static void compare(String name, String[] input, Case split, Case scan) {
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            sink += split.run(input) + scan.run(input);
+        }
+        long splitTime = 0;
+        long scanTime = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            sink += split.run(input);
+            splitTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            sink += scan.run(input);
+            scanTime += System.nanoTime() - start;
+        }
+        System.out.println(name + ", split: " + splitTime / ((long) ROUNDS * input.length) + " ns, scan: "
+                + scanTime / ((long) ROUNDS * input.length) + " ns (" + sink + ")");
+    }
+}
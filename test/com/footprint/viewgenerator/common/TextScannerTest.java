@@ -0,0 +1,49 @@
+package com.footprint.viewgenerator.common;
+
+import junit.framework.TestCase;
+
+public class TextScannerTest extends TestCase {
+
+    public void testAfterLastSlash() {
+        assertEquals("main", TextScanner.afterLastSlash("@layout/main"));
+        assertEquals("main", TextScanner.afterLastSlash("@android:layout/main"));
+        assertNull(TextScanner.afterLastSlash("@layout/"));
+        assertNull(TextScanner.afterLastSlash("main"));
+    }
+
+    public void testSnakeAsCamel() {
+        assertEquals("userName", camel("user_name", false));
+        assertEquals("UserName", camel("user_name", true));
+        assertEquals("title", camel("title", false));
+        assertEquals("Title", camel("title", true));
+    }
+
+    public void testSnakeAsCamelSkipsEmptyWords() {
+        assertEquals("aB", camel("a__b", false));
+        assertEquals("aB", camel("_a_b_", false));
+        assertEquals("", camel("", false));
+        assertEquals("", camel("___", true));
+    }
+
+    public void testSnakeAsCamelUsesPartAfterLastDot() {
+        assertEquals("textTitle", camel("android.text_title", false));
+    }
+
+    public void testSnakeAsCamelAppends() {
+        assertEquals("mUserName", TextScanner.appendSnakeAsCamel("user_name", true, new StringBuilder("m")).toString());
+    }
+
+    public void testTransformUnderscore2Camel() {
+        assertEquals("AaBbCc", StringUtils.transformUnderscore2Camel("aa_bb_cc"));
+        assertEquals("", StringUtils.transformUnderscore2Camel(" "));
+    }
+
+    public void testRemoveBlanksInStringOnlyRemovesSpaces() {
+        assertEquals("R.layout.main", StringUtils.removeBlanksInString("R. layout .main"));
+        assertEquals("a\tb\n", StringUtils.removeBlanksInString("a \tb\n"));
+    }
+
+    private static String camel(String text, boolean capitalizeFirst) {
+        return TextScanner.appendSnakeAsCamel(text, capitalizeFirst, new StringBuilder()).toString();
+    }
+}
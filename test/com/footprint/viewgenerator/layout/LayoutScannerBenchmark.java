@@ -0,0 +1,108 @@
+package com.footprint.viewgenerator.layout;
+
+import com.footprint.viewgenerator.index.LayoutEntry;
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Compares {@link LayoutScanner#scan(byte[])} with building the XML PSI of the same layout and walking it with
+ * {@link LayoutScanner#scanPsi}, on a generated layout of a few thousand views. Prints the time and, where the JVM
+ * can tell, the bytes allocated per scan. Not part of the regular tests: the PSI needs the platform, so run it
+ * from the IDE like a test.
+ */
+public class LayoutScannerBenchmark extends LightPlatformCodeInsightFixtureTestCase {
+    private static final int VIEWS = 3000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    private interface Case {
+        List<LayoutEntry> run();
+    }
+
+    public void testScanBytesAgainstPsi() {
+        final String text = generateLayout(VIEWS);
+        final byte[] content = text.getBytes(Charset.forName("UTF-8"));
+        final PsiFileFactory factory = PsiFileFactory.getInstance(getProject());
+
+        Case bytes = new Case() {
+            @Override
+            public List<LayoutEntry> run() {
+                return LayoutScanner.scan(content);
+            }
+        };
+        Case psi = new Case() {
+            @Override
+            public List<LayoutEntry> run() {
+                PsiFile file = factory.createFileFromText("large.xml", XmlFileType.INSTANCE, text);
+                return LayoutScanner.scanPsi(file);
+            }
+        };
+        assertEquals(psi.run(), bytes.run());
+
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            sink += bytes.run().size() + psi.run().size();
+        }
+        long[] bytesCost = measure(bytes);
+        long[] psiCost = measure(psi);
+        sink += bytesCost[2] + psiCost[2];
+        System.out.println(VIEWS + " views, bytes: " + format(bytesCost) + ", psi: " + format(psiCost)
+                + " (" + sink + ")");
+    }
+
+    /**
+     * @return nanoseconds per round, bytes allocated per round or -1 when unknown, and a sink of the results
+     */
+    private static long[] measure(Case scan) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long thread = Thread.currentThread().getId();
+
+        long sink = 0;
+        long allocated = allocations != null ? allocations.getThreadAllocatedBytes(thread) : 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            sink += scan.run().size();
+        }
+        long time = (System.nanoTime() - start) / ROUNDS;
+        allocated = allocations != null ? (allocations.getThreadAllocatedBytes(thread) - allocated) / ROUNDS : -1;
+        return new long[]{time, allocated, sink};
+    }
+
+    private static String format(long[] cost) {
+        return cost[0] / 1000 + " us" + (cost[1] >= 0 ? ", " + cost[1] / 1024 + " KB" : "");
+    }
+
+    /**
+     * Rows of a title, an image, a view without an id and an include, in nested layouts
+     */
+    private static String generateLayout(int views) {
+        StringBuilder layout = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+                + "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n"
+                + "    android:id=\"@+id/root\"\n"
+                + "    android:layout_width=\"match_parent\"\n"
+                + "    android:layout_height=\"match_parent\"\n"
+                + "    android:orientation=\"vertical\">\n");
+        for (int row = 0; row < views / 4; row++) {
+            layout.append("    <LinearLayout android:layout_width=\"match_parent\" android:layout_height=\"wrap_content\">\n")
+                    .append("        <TextView android:id=\"@+id/title_").append(row)
+                    .append("\" android:layout_width=\"wrap_content\" android:layout_height=\"wrap_content\"")
+                    .append(" android:text=\"Title ").append(row).append("\" />\n")
+                    .append("        <view class=\"com.example.AvatarView\" android:id=\"@+id/avatar_").append(row)
+                    .append("\" android:layout_width=\"48dp\" android:layout_height=\"48dp\" />\n")
+                    .append("        <Space android:layout_width=\"8dp\" android:layout_height=\"8dp\" />\n")
+                    .append("        <include layout=\"@layout/item_badge_").append(row % 10).append("\" />\n")
+                    .append("    </LinearLayout>\n");
+        }
+        return layout.append("</LinearLayout>\n").toString();
+    }
+}
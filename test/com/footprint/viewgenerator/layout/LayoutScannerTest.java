@@ -0,0 +1,67 @@
+package com.footprint.viewgenerator.layout;
+
+import com.footprint.viewgenerator.index.LayoutEntry;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The entries streamed from the bytes of a layout must be the ones read from its PSI.
+ */
+public class LayoutScannerTest extends LightPlatformCodeInsightFixtureTestCase {
+    private static final String LAYOUT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+            + "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n"
+            + "    android:id=\"@+id/root\"\n"
+            + "    android:layout_width=\"match_parent\"\n"
+            + "    android:layout_height=\"match_parent\">\n"
+            + "    <TextView android:id=\"@+id/title\" />\n"
+            + "    <TextView android:text=\"no id\" />\n"
+            + "    <view class=\"com.example.CustomView\" android:id=\"@+id/custom\" />\n"
+            + "    <include layout=\"@layout/header\" />\n"
+            + "    <FrameLayout>\n"
+            + "        <android.support.v7.widget.RecyclerView android:id=\"@+id/list\" />\n"
+            + "    </FrameLayout>\n"
+            + "</LinearLayout>\n";
+
+    public void testScanBytes() {
+        assertEquals(Arrays.asList(
+                new LayoutEntry("LinearLayout", "@+id/root", null),
+                new LayoutEntry("TextView", "@+id/title", null),
+                new LayoutEntry("com.example.CustomView", "@+id/custom", null),
+                new LayoutEntry("include", null, "header"),
+                new LayoutEntry("android.support.v7.widget.RecyclerView", "@+id/list", null)), scan(LAYOUT));
+    }
+
+    public void testScanBytesMatchesPsi() {
+        PsiFile file = myFixture.configureByText("main.xml", LAYOUT);
+        assertEquals(LayoutScanner.scanPsi(file), scan(LAYOUT));
+    }
+
+    public void testMalformedLayoutKeepsEntriesBeforeError() {
+        String layout = "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n"
+                + "    <TextView android:id=\"@+id/title\" />\n"
+                + "    <TextView android:id=\"@+id/broken\" \n";
+        assertEquals(Arrays.asList(new LayoutEntry("TextView", "@+id/title", null)), scan(layout));
+    }
+
+    public void testIdWithoutAndroidPrefixIsIgnored() {
+        String layout = "<LinearLayout xmlns:app=\"http://schemas.android.com/apk/res-auto\">\n"
+                + "    <TextView app:id=\"@+id/title\" />\n"
+                + "</LinearLayout>\n";
+        assertEmpty(scan(layout));
+    }
+
+    public void testScanTag() {
+        PsiFile file = myFixture.configureByText("main.xml", LAYOUT);
+        assertEquals(new LayoutEntry("LinearLayout", "@+id/root", null),
+                LayoutScanner.scanTag(((XmlFile) file).getRootTag()));
+    }
+
+    private static List<LayoutEntry> scan(String layout) {
+        return LayoutScanner.scan(layout.getBytes(Charset.forName("UTF-8")));
+    }
+}